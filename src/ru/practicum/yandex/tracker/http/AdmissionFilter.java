@@ -0,0 +1,208 @@
+package ru.practicum.yandex.tracker.http;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bounds concurrent requests separately for reads (GET/HEAD) and writes. A request that finds
+// no free slot waits up to maxWaitMs, but only while fewer than maxQueued others are already
+// waiting; otherwise it is turned away at once with 503 and Retry-After. Only requests on
+// virtual threads wait: a platform thread is a pool worker or the dispatcher itself, and parking
+// it would stall the requests queued behind it, so there a missing slot is refused at once and
+// the executor's own queue is the waiting line. An optional per-client token bucket, keyed by
+// remote address, answers a client over its rate with 429.
+public final class AdmissionFilter extends Filter {
+    public static final int DEFAULT_MAX_READS = 256;
+    public static final int DEFAULT_MAX_WRITES = 32;
+    public static final int DEFAULT_MAX_QUEUED = 256;
+    public static final long DEFAULT_MAX_WAIT_MS = 500;
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+    // Thread.isVirtual, looked up reflectively so the filter still runs on JDK 17; null there.
+    private static final Method IS_VIRTUAL = isVirtualMethod();
+
+    private final Limit reads;
+    private final Limit writes;
+    private final long maxWaitMs;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final Map<String, TokenBucket> clients = new ConcurrentHashMap<>();
+    private volatile double clientRate;
+    private volatile int clientBurst;
+
+    private static final class Limit {
+        final Semaphore slots;
+        final int maxQueued;
+        final AtomicInteger queued = new AtomicInteger();
+
+        Limit(int inFlight, int maxQueued) {
+            if (inFlight <= 0 || maxQueued < 0) {
+                throw new IllegalArgumentException("Bad limit: inFlight=" + inFlight + ", queued=" + maxQueued);
+            }
+            this.slots = new Semaphore(inFlight);
+            this.maxQueued = maxQueued;
+        }
+
+        boolean acquire(long maxWaitMs) throws InterruptedException {
+            if (slots.tryAcquire()) {
+                return true;
+            }
+            if (maxWaitMs <= 0) {
+                return false;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                return false;
+            }
+            try {
+                return slots.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS);
+            } finally {
+                queued.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(int burst, long now) {
+            this.tokens = burst;
+            this.refilledAt = now;
+        }
+
+        // 0 when a token was taken, otherwise nanoseconds until one is available.
+        synchronized long take(double perSecond, int burst, long now) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * perSecond / 1e9);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * 1e9 / perSecond);
+        }
+
+        synchronized boolean isFull(int burst, double perSecond, long now) {
+            return tokens + (now - refilledAt) * perSecond / 1e9 >= burst;
+        }
+    }
+
+    public AdmissionFilter() {
+        this(DEFAULT_MAX_READS, DEFAULT_MAX_WRITES, DEFAULT_MAX_QUEUED, DEFAULT_MAX_WAIT_MS);
+    }
+
+    public AdmissionFilter(int maxReads, int maxWrites, int maxQueued, long maxWaitMs) {
+        this.reads = new Limit(maxReads, maxQueued);
+        this.writes = new Limit(maxWrites, maxQueued);
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    // Turns on per-client rate limiting; a rate of zero turns it off again.
+    public AdmissionFilter perClient(double requestsPerSecond, int burst) {
+        if (requestsPerSecond < 0 || (requestsPerSecond > 0 && burst <= 0)) {
+            throw new IllegalArgumentException("Bad client rate: " + requestsPerSecond + "/s, burst " + burst);
+        }
+        this.clientBurst = burst;
+        this.clientRate = requestsPerSecond;
+        clients.clear();
+        return this;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    @Override
+    public void doFilter(HttpExchange h, Chain chain) throws IOException {
+        double rate = clientRate;
+        if (rate > 0) {
+            long wait = bucketFor(h, rate).take(rate, clientBurst, System.nanoTime());
+            if (wait > 0) {
+                throttled.increment();
+                refuse(h, 429, "Too many requests from this client", wait);
+                return;
+            }
+        }
+        String method = h.getRequestMethod();
+        Limit limit = "GET".equals(method) || "HEAD".equals(method) ? reads : writes;
+        boolean admitted;
+        try {
+            admitted = limit.acquire(onVirtualThread() ? maxWaitMs : 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitted = false;
+        }
+        if (!admitted) {
+            rejected.increment();
+            refuse(h, 503, "Server busy", TimeUnit.MILLISECONDS.toNanos(Math.max(maxWaitMs, 1)));
+            return;
+        }
+        try {
+            chain.doFilter(h);
+        } finally {
+            limit.slots.release();
+        }
+    }
+
+    @Override
+    public String description() {
+        return "admission control and per-client rate limiting";
+    }
+
+    private static boolean onVirtualThread() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (Boolean) IS_VIRTUAL.invoke(Thread.currentThread());
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static Method isVirtualMethod() {
+        try {
+            return Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException preJdk21) {
+            return null;
+        }
+    }
+
+    private TokenBucket bucketFor(HttpExchange h, double rate) {
+        String client = h.getRemoteAddress().getAddress().getHostAddress();
+        TokenBucket bucket = clients.get(client);
+        if (bucket == null) {
+            if (clients.size() >= MAX_TRACKED_CLIENTS) {
+                // A full bucket is the same as a fresh one, so idle clients can be forgotten.
+                long now = System.nanoTime();
+                clients.values().removeIf(b -> b.isFull(clientBurst, rate, now));
+            }
+            bucket = clients.computeIfAbsent(client, c -> new TokenBucket(clientBurst, System.nanoTime()));
+        }
+        return bucket;
+    }
+
+    private static void refuse(HttpExchange h, int code, String message, long retryAfterNanos) throws IOException {
+        // Closing drains a small unread body so the connection can be reused.
+        h.getRequestBody().close();
+        long seconds = Math.max(1, (retryAfterNanos + 999_999_999L) / 1_000_000_000L);
+        h.getResponseHeaders().set("Retry-After", Long.toString(seconds));
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        h.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        h.sendResponseHeaders(code, body.length);
+        h.getResponseBody().write(body);
+        h.close();
+    }
+}
@@ -1,12 +1,29 @@
 package ru.practicum.yandex.tracker.http;
 
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.sun.net.httpserver.HttpExchange;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class BaseHttpHandler {
+    public static final String VIEWER_HEADER = "X-Session-Id";
+    private static final int STREAM_BUFFER = 16 * 1024;
+    private static final Logger LOG = Logger.getLogger(BaseHttpHandler.class.getName());
 
     protected static String readBody(HttpExchange h) throws IOException {
         try (InputStream is = h.getRequestBody()) {
@@ -19,6 +36,11 @@ public class BaseHttpHandler {
         if (contentType != null) {
             h.getResponseHeaders().add("Content-Type", contentType + "; charset=utf-8");
         }
+        CompressionFilter.Negotiated nc = negotiated(h);
+        if (nc != null && resp.length > 0 && resp.length >= nc.filter.getThreshold()) {
+            resp = nc.filter.compress(resp, nc.encoding);
+            h.getResponseHeaders().set("Content-Encoding", nc.encoding);
+        }
         h.sendResponseHeaders(code, resp.length);
         if (resp.length > 0) {
             h.getResponseBody().write(resp);
@@ -30,6 +52,166 @@ public class BaseHttpHandler {
         send(h, code, json, "application/json");
     }
 
+    // Writes the value straight into the response with chunked transfer encoding, so a large
+    // list is never held as one String or byte array.
+    protected static void streamJson(HttpExchange h, int code, Gson gson, Object value) throws IOException {
+        streamJson(h, code, gson, value, 0);
+    }
+
+    // As above, and also returns the uncompressed JSON when it fits in captureLimit bytes;
+    // null otherwise.
+    protected static byte[] streamJson(HttpExchange h, int code, Gson gson, Object value, int captureLimit)
+            throws IOException {
+        h.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        CompressionFilter.Negotiated nc = negotiated(h);
+        OutputStream body;
+        if (nc == null) {
+            h.sendResponseHeaders(code, 0);
+            body = h.getResponseBody();
+        } else {
+            body = new DeferredBody(h, code, nc);
+        }
+        CapturingStream capture = captureLimit > 0 ? new CapturingStream(body, captureLimit) : null;
+        try (Writer out = new OutputStreamWriter(new BufferedOutputStream(capture == null ? body : capture,
+                STREAM_BUFFER), StandardCharsets.UTF_8)) {
+            JsonWriter json = gson.newJsonWriter(out);
+            if (value == null) {
+                json.nullValue();
+            } else {
+                gson.toJson(value, value.getClass(), json);
+            }
+            json.flush();
+        } finally {
+            h.close();
+        }
+        return capture == null ? null : capture.captured();
+    }
+
+    protected static void sendBytes(HttpExchange h, int code, byte[] json, String encoding) throws IOException {
+        h.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        if (encoding != null) {
+            h.getResponseHeaders().set("Content-Encoding", encoding);
+        }
+        h.sendResponseHeaders(code, json.length == 0 ? -1 : json.length);
+        try {
+            h.getResponseBody().write(json);
+        } finally {
+            h.close();
+        }
+    }
+
+    private static final class CapturingStream extends FilterOutputStream {
+        private final int limit;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        CapturingStream(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (copy != null) {
+                if (copy.size() + len > limit) {
+                    copy = null;
+                } else {
+                    copy.write(b, off, len);
+                }
+            }
+        }
+
+        byte[] captured() {
+            return copy == null ? null : copy.toByteArray();
+        }
+    }
+
+    private static CompressionFilter.Negotiated negotiated(HttpExchange h) {
+        return (CompressionFilter.Negotiated) h.getAttribute(CompressionFilter.ATTRIBUTE);
+    }
+
+    // Holds back up to the threshold before choosing: a short body goes out plain with a
+    // Content-Length, a longer one is compressed and chunked as it is written.
+    private static final class DeferredBody extends OutputStream {
+        private final HttpExchange h;
+        private final int code;
+        private final CompressionFilter.Negotiated nc;
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        private OutputStream out;
+
+        DeferredBody(HttpExchange h, int code, CompressionFilter.Negotiated nc) {
+            this.h = h;
+            this.code = code;
+            this.nc = nc;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out != null) {
+                out.write(b, off, len);
+                return;
+            }
+            pending.write(b, off, len);
+            if (pending.size() > nc.filter.getThreshold()) {
+                h.getResponseHeaders().set("Content-Encoding", nc.encoding);
+                h.sendResponseHeaders(code, 0);
+                out = nc.filter.compress(h.getResponseBody(), nc.encoding);
+                pending.writeTo(out);
+                pending.reset();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (out == null) {
+                h.sendResponseHeaders(code, pending.size() == 0 ? -1 : pending.size());
+                out = h.getResponseBody();
+                pending.writeTo(out);
+            }
+            out.close();
+        }
+    }
+
+    // Sets the ETag and answers 304 when the client already holds that representation. Tags are
+    // weak, so the plain and compressed bodies share one.
+    protected static boolean notModified(HttpExchange h, String etag) throws IOException {
+        h.getResponseHeaders().set("ETag", etag);
+        List<String> conditions = h.getRequestHeaders().get("If-None-Match");
+        if (conditions == null || !matchesAny(conditions, etag)) {
+            return false;
+        }
+        h.sendResponseHeaders(304, -1);
+        h.close();
+        return true;
+    }
+
+    private static boolean matchesAny(List<String> conditions, String etag) {
+        String opaque = opaqueTag(etag);
+        for (String header : conditions) {
+            for (String candidate : header.split(",")) {
+                String tag = candidate.trim();
+                if ("*".equals(tag) || opaque.equals(opaqueTag(tag))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
     protected static void sendText(HttpExchange h, int code, String text) throws IOException {
         send(h, code, text, "text/plain");
     }
@@ -42,34 +224,33 @@ public class BaseHttpHandler {
         sendText(h, 406, msg == null ? "Not acceptable" : msg);
     }
 
+    protected static void versionConflict(HttpExchange h, String msg) throws IOException {
+        sendText(h, 409, msg == null ? "Conflict" : msg);
+    }
+
     protected static void serverError(HttpExchange h, Throwable ex) throws IOException {
-        ex.printStackTrace();
+        LOG.log(Level.SEVERE, "Request failed: " + h.getRequestMethod() + " " + h.getRequestURI(), ex);
         sendText(h, 500, "Server error: " + ex.getClass().getSimpleName() +
                 (ex.getMessage() == null ? "" : (": " + ex.getMessage())));
     }
 
-    protected static Integer parseId(String path, String base) {
-        if (!path.startsWith(base)) {
-            return null;
-        }
-        String tail = path.substring(base.length());
-        if (tail.isEmpty() || "/".equals(tail)) {
-            return null;
-        }
-        if (tail.startsWith("/")) {
-            tail = tail.substring(1);
-        }
-        if (tail.isEmpty()) {
-            return null;
-        }
-        int slash = tail.indexOf('/');
-        if (slash >= 0) {
-            tail = tail.substring(0, slash);
+    protected static String viewerOf(HttpExchange h) {
+        String viewer = h.getRequestHeaders().getFirst(VIEWER_HEADER);
+        return viewer == null || viewer.isBlank() ? null : viewer.trim();
+    }
+
+    protected static Map<String, String> queryParams(HttpExchange h) {
+        Map<String, String> params = new HashMap<>();
+        String query = h.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return params;
         }
-        try {
-            return Integer.parseInt(tail);
-        } catch (NumberFormatException e) {
-            return null;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
         }
+        return params;
     }
 }
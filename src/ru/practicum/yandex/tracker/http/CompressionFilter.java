@@ -0,0 +1,244 @@
+package ru.practicum.yandex.tracker.http;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Decodes gzip/deflate request bodies and tells BaseHttpHandler which encoding, if any, the
+// client accepts for the response. Bodies below the threshold are always sent as they are.
+// A decoded body may not grow past maxDecodedBytes: a few kilobytes of gzip can inflate to
+// gigabytes, and reading further fails with BodyTooLargeException, which is answered with 413.
+public final class CompressionFilter extends Filter {
+    public static final int DEFAULT_LEVEL = 6;
+    public static final int DEFAULT_THRESHOLD = 1024;
+    public static final long DEFAULT_MAX_DECODED_BYTES = 8L << 20;
+    static final String ATTRIBUTE = "tracker.compression";
+
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final int BUFFER = 8 * 1024;
+
+    private final int level;
+    private final int threshold;
+    private final long maxDecodedBytes;
+
+    public CompressionFilter() {
+        this(DEFAULT_LEVEL, DEFAULT_THRESHOLD);
+    }
+
+    public CompressionFilter(int level, int threshold) {
+        this(level, threshold, DEFAULT_MAX_DECODED_BYTES);
+    }
+
+    public CompressionFilter(int level, int threshold, long maxDecodedBytes) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be 0..9: " + level);
+        }
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative: " + threshold);
+        }
+        if (maxDecodedBytes <= 0) {
+            throw new IllegalArgumentException("Decoded body limit must be positive: " + maxDecodedBytes);
+        }
+        this.level = level;
+        this.threshold = threshold;
+        this.maxDecodedBytes = maxDecodedBytes;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public long getMaxDecodedBytes() {
+        return maxDecodedBytes;
+    }
+
+    @Override
+    public void doFilter(HttpExchange h, Chain chain) throws IOException {
+        String encoding = h.getRequestHeaders().getFirst("Content-Encoding");
+        if (encoding != null && !encoding.isBlank() && !"identity".equalsIgnoreCase(encoding.trim())) {
+            InputStream body = decoding(h.getRequestBody(), encoding.trim());
+            if (body == null) {
+                byte[] msg = ("Unsupported Content-Encoding: " + encoding).getBytes(StandardCharsets.UTF_8);
+                h.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+                h.sendResponseHeaders(415, msg.length);
+                h.getResponseBody().write(msg);
+                h.close();
+                return;
+            }
+            h.setStreams(new BoundedStream(body, maxDecodedBytes), null);
+        }
+        h.getResponseHeaders().add("Vary", "Accept-Encoding");
+        String accepted = negotiate(h.getRequestHeaders().getFirst("Accept-Encoding"));
+        if (accepted != null) {
+            h.setAttribute(ATTRIBUTE, new Negotiated(this, accepted));
+        }
+        chain.doFilter(h);
+    }
+
+    @Override
+    public String description() {
+        return "gzip/deflate content coding";
+    }
+
+    private static InputStream decoding(InputStream in, String encoding) throws IOException {
+        if (GZIP.equalsIgnoreCase(encoding) || "x-gzip".equalsIgnoreCase(encoding)) {
+            return new GZIPInputStream(in, BUFFER);
+        }
+        if (DEFLATE.equalsIgnoreCase(encoding)) {
+            return new InflaterInputStream(in);
+        }
+        return null;
+    }
+
+    // Picks gzip over deflate at equal weight; q=0 rules a coding out, and "*" stands for
+    // any coding not listed explicitly.
+    static String negotiate(String header) {
+        if (header == null || header.isBlank()) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : header.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException malformed) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case GZIP, "x-gzip" -> gzip = Math.max(gzip, q);
+                case DEFLATE -> deflate = Math.max(deflate, q);
+                case "*" -> any = q;
+                default -> {
+                }
+            }
+        }
+        if (gzip < 0) {
+            gzip = any;
+        }
+        if (deflate < 0) {
+            deflate = any;
+        }
+        if (gzip <= 0 && deflate <= 0) {
+            return null;
+        }
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    OutputStream compress(OutputStream out, String encoding) throws IOException {
+        if (GZIP.equals(encoding)) {
+            return new GZIPOutputStream(out, BUFFER) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+        Deflater deflater = new Deflater(level);
+        return new DeflaterOutputStream(out, deflater, BUFFER) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    byte[] compress(byte[] data, String encoding) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (OutputStream out = compress(buf, encoding)) {
+            out.write(data);
+        }
+        return buf.toByteArray();
+    }
+
+    static final class BodyTooLargeException extends IOException {
+        BodyTooLargeException(long limit) {
+            super("Decoded request body exceeds " + limit + " bytes");
+        }
+    }
+
+    // The limit, however deep a handler's parser wrapped it; null for any other failure.
+    static BodyTooLargeException bodyTooLarge(Throwable ex) {
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof BodyTooLargeException) {
+                return (BodyTooLargeException) t;
+            }
+        }
+        return null;
+    }
+
+    private static final class BoundedStream extends FilterInputStream {
+        private final long limit;
+        private long read;
+
+        BoundedStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        // Asks for one byte past the limit, so a body of exactly `limit` bytes still reads.
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, (int) Math.min(len, limit - read + 1));
+            if (n > 0) {
+                read += n;
+                if (read > limit) {
+                    throw new BodyTooLargeException(limit);
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            int len = (int) Math.min(n, BUFFER);
+            return Math.max(0, read(new byte[len], 0, len));
+        }
+    }
+
+    static final class Negotiated {
+        final CompressionFilter filter;
+        final String encoding;
+
+        Negotiated(CompressionFilter filter, String encoding) {
+            this.filter = filter;
+            this.encoding = encoding;
+        }
+    }
+}
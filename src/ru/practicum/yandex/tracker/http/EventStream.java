@@ -0,0 +1,301 @@
+package ru.practicum.yandex.tracker.http;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.yandex.tracker.manager.TaskEvent;
+import ru.practicum.yandex.tracker.manager.TaskEventListener;
+import ru.practicum.yandex.tracker.manager.TaskManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Server-Sent Events feed of manager changes. Subscribing writes the headers and returns,
+// leaving the exchange open. A single broadcaster thread encodes each event once and hands the
+// frame to every subscriber's queue without touching a socket; each subscriber has its own
+// writer, which replays what it missed and then drains its queue, so a client that stops
+// reading only stalls itself. A queue that grows past MAX_QUEUED_BYTES is replaced by a single
+// reset, and a subscriber whose write has been blocked for WRITE_TIMEOUT_MS is disconnected.
+// Replay comes from the manager's bounded event log; a client that asks to resume from before
+// the oldest retained event, or from past the newest one, gets a "reset" event and should
+// refetch the lists.
+public final class EventStream implements TaskEventListener, Closeable {
+    public static final long HEARTBEAT_MS = 15_000;
+    public static final long MAX_QUEUED_BYTES = 1 << 20;
+    public static final int MAX_PENDING_EVENTS = 1 << 16;
+    public static final long WRITE_TIMEOUT_MS = 5_000;
+    private static final long SWEEP_MS = 500;
+    private static final int REPLAY_BATCH = 512;
+    private static final Frame HEARTBEAT = new Frame(0, ":\n\n".getBytes(StandardCharsets.UTF_8));
+    private static final Frame CLOSE = new Frame(0, new byte[0]);
+    private static final TaskEvent STOP = new TaskEvent(0, null, null, 0, null);
+
+    private final TaskManager manager;
+    private final Gson gson;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final BlockingQueue<TaskEvent> pending = new LinkedBlockingQueue<>(MAX_PENDING_EVENTS);
+    // Set when `pending` was full and an event was lost; every subscriber is then reset.
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+    private final ExecutorService writers = writerExecutor();
+    private final Thread broadcaster;
+
+    private static final class Frame {
+        final long sequence;
+        final byte[] bytes;
+
+        Frame(long sequence, byte[] bytes) {
+            this.sequence = sequence;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Subscriber {
+        final HttpExchange exchange;
+        final OutputStream out;
+        final long resumeFrom;
+        final boolean resetFirst;
+        final BlockingQueue<Frame> frames = new LinkedBlockingQueue<>();
+        final AtomicLong queuedBytes = new AtomicLong();
+        volatile boolean closed;
+        // When the write in progress started, or 0 between writes.
+        volatile long writingSince;
+        // Only touched by the writer.
+        long delivered;
+
+        Subscriber(HttpExchange exchange, long resumeFrom, boolean resetFirst) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+            this.resumeFrom = resumeFrom;
+            this.resetFirst = resetFirst;
+        }
+
+        // Only the broadcaster offers, so the check and the add do not race with each other.
+        boolean offer(Frame frame) {
+            if (queuedBytes.get() + frame.bytes.length > MAX_QUEUED_BYTES && !frames.isEmpty()) {
+                return false;
+            }
+            queuedBytes.addAndGet(frame.bytes.length);
+            frames.add(frame);
+            return true;
+        }
+
+        void discardQueued() {
+            List<Frame> discarded = new ArrayList<>();
+            frames.drainTo(discarded);
+            for (Frame f : discarded) {
+                queuedBytes.addAndGet(-f.bytes.length);
+            }
+        }
+    }
+
+    public EventStream(TaskManager manager, Gson gson) {
+        this.manager = manager;
+        this.gson = gson;
+        this.broadcaster = new Thread(this::broadcast, "events-broadcaster");
+        broadcaster.setDaemon(true);
+        broadcaster.start();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Called under the manager lock, so it only hands the event over and never waits.
+    @Override
+    public void onEvent(TaskEvent event) {
+        if (!pending.offer(event)) {
+            overflowed.set(true);
+        }
+    }
+
+    // The resume point is fixed at the request, before the headers go out and the client starts
+    // acting on them: without one the feed starts here, and one ahead of anything this manager
+    // has issued (a client of an earlier server run) is reset to here.
+    void subscribe(HttpExchange h, long lastEventId) throws IOException {
+        long last = manager.getLastSequence();
+        boolean ahead = lastEventId > last;
+        if (lastEventId < 0 || ahead) {
+            lastEventId = last;
+        }
+        h.getResponseHeaders().add("Content-Type", "text/event-stream; charset=utf-8");
+        h.getResponseHeaders().add("Cache-Control", "no-cache");
+        h.sendResponseHeaders(200, 0);
+        Subscriber s = new Subscriber(h, lastEventId, ahead);
+        // Registered before the replay reads the log, so nothing emitted in between is missed;
+        // the writer skips queued events the replay already delivered.
+        subscribers.add(s);
+        writers.execute(() -> write(s));
+    }
+
+    private void write(Subscriber s) {
+        try {
+            s.delivered = s.resumeFrom;
+            s.writingSince = System.nanoTime();
+            if (s.resetFirst) {
+                s.out.write(resetFrame(s.resumeFrom));
+            }
+            replay(s);
+            s.out.flush();
+            s.writingSince = 0;
+            while (!s.closed) {
+                Frame frame = s.frames.poll(HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                if (frame == null) {
+                    frame = HEARTBEAT;
+                }
+                do {
+                    if (frame == CLOSE || s.closed) {
+                        return;
+                    }
+                    s.queuedBytes.addAndGet(-frame.bytes.length);
+                    if (frame.sequence == 0 || frame.sequence > s.delivered) {
+                        s.writingSince = System.nanoTime();
+                        s.out.write(frame.bytes);
+                        s.delivered = Math.max(s.delivered, frame.sequence);
+                    }
+                    frame = s.frames.poll();
+                } while (frame != null);
+                s.out.flush();
+                s.writingSince = 0;
+            }
+        } catch (IOException | InterruptedException gone) {
+            // Client went away or the stream is shutting down.
+        } finally {
+            drop(s);
+            s.exchange.close();
+        }
+    }
+
+    private void replay(Subscriber s) throws IOException {
+        long from = s.delivered;
+        while (true) {
+            List<TaskEvent> batch = manager.getEventsSince(from, REPLAY_BATCH);
+            if (batch.isEmpty()) {
+                if (from >= manager.getLastSequence()) {
+                    return;
+                }
+                from = reset(s);
+                continue;
+            }
+            if (batch.get(0).getSequence() > from + 1) {
+                from = reset(s);
+                continue;
+            }
+            for (TaskEvent event : batch) {
+                s.out.write(encode(event));
+                s.delivered = event.getSequence();
+            }
+            from = s.delivered;
+        }
+    }
+
+    private long reset(Subscriber s) throws IOException {
+        long last = manager.getLastSequence();
+        s.out.write(resetFrame(last));
+        s.delivered = last;
+        return last;
+    }
+
+    private static byte[] resetFrame(long sequence) {
+        return ("id: " + sequence + "\nevent: reset\ndata: {}\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(TaskEvent event) {
+        return ("id: " + event.getSequence() + "\nevent: " + event.getChange().name().toLowerCase()
+                + "\ndata: " + gson.toJson(event) + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void broadcast() {
+        try {
+            while (true) {
+                TaskEvent event = pending.poll(SWEEP_MS, TimeUnit.MILLISECONDS);
+                dropStalled();
+                if (event == null) {
+                    continue;
+                }
+                if (event == STOP) {
+                    return;
+                }
+                if (overflowed.getAndSet(false)) {
+                    // Events were lost on the way in; the reset takes the subscriber to the
+                    // newest sequence and the queue fills in from there.
+                    pending.clear();
+                    long last = manager.getLastSequence();
+                    send(new Frame(last, resetFrame(last)));
+                } else if (!subscribers.isEmpty()) {
+                    send(new Frame(event.getSequence(), encode(event)));
+                }
+            }
+        } catch (InterruptedException stopped) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void send(Frame frame) {
+        for (Subscriber s : subscribers) {
+            if (!s.offer(frame)) {
+                overflow(s);
+            }
+        }
+    }
+
+    // The backlog is replaced by a reset, which brings the client up to date by refetching.
+    private void overflow(Subscriber s) {
+        s.discardQueued();
+        long last = manager.getLastSequence();
+        s.offer(new Frame(last, resetFrame(last)));
+    }
+
+    // A writer blocked this long is writing to a client that has stopped reading. Its thread
+    // stays blocked until the socket fails, but nothing more is queued for it.
+    private void dropStalled() {
+        long now = System.nanoTime();
+        for (Subscriber s : subscribers) {
+            long since = s.writingSince;
+            if (since != 0 && now - since > TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT_MS)) {
+                drop(s);
+            }
+        }
+    }
+
+    // Wakes the writer so it closes the exchange; a writer stuck on a socket that is no longer
+    // read closes it once the write fails.
+    private void drop(Subscriber s) {
+        if (subscribers.remove(s)) {
+            s.closed = true;
+            s.discardQueued();
+            s.frames.add(CLOSE);
+        }
+    }
+
+    @Override
+    public void close() {
+        pending.clear();
+        pending.offer(STOP);
+        for (Subscriber s : subscribers) {
+            drop(s);
+        }
+        writers.shutdown();
+    }
+
+    // Platform threads: a write blocked on a client that stopped reading happens inside the
+    // server's synchronized output stream, which would pin a virtual thread's carrier.
+    private static ExecutorService writerExecutor() {
+        return Executors.newCachedThreadPool(r -> {
+            Thread th = new Thread(r, "events-writer");
+            th.setDaemon(true);
+            return th;
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package ru.practicum.yandex.tracker.http;
+
+public enum ExecutionMode {
+    // Every request on the server's dispatcher thread.
+    SINGLE,
+    // A fixed pool of platform threads with a bounded queue.
+    POOL,
+    // A virtual thread per request; falls back to POOL before JDK 21.
+    VIRTUAL
+}
@@ -1,291 +1,588 @@
 package ru.practicum.yandex.tracker.http;
 
 import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
+import ru.practicum.yandex.tracker.manager.HistoryOrder;
+import ru.practicum.yandex.tracker.manager.HistoryPage;
+import ru.practicum.yandex.tracker.manager.InMemoryTaskManager;
 import ru.practicum.yandex.tracker.manager.Managers;
 import ru.practicum.yandex.tracker.manager.TaskManager;
+import ru.practicum.yandex.tracker.manager.TaskQuery;
+import ru.practicum.yandex.tracker.manager.TaskSort;
+import ru.practicum.yandex.tracker.manager.VersionConflictException;
 import ru.practicum.yandex.tracker.model.Epic;
+import ru.practicum.yandex.tracker.model.Status;
 import ru.practicum.yandex.tracker.model.Subtask;
 import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static ru.practicum.yandex.tracker.http.BaseHttpHandler.*;
 
 public class HttpTaskServer {
 
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_BACKLOG = 128;
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final int POOL_QUEUE_PER_THREAD = 64;
+
+    private static final Set<String> LIST_PARAMS =
+            Set.of("limit", "cursor", "status", "epicId", "from", "to", "sort", "order");
+    private static final int DEFAULT_HISTORY_PAGE = 20;
+    private static final int DEFAULT_TOP_VIEWED = 10;
+    private static final int DEFAULT_CHANGES_PAGE = 500;
+
     private final HttpServer server;
     private final TaskManager manager;
+    private final ExecutorService executor;
+    private final int port;
+    private final ResponseCache cache;
+    private final EventStream events;
+    private final Metrics metrics = new Metrics();
     private final Gson gson = JsonUtil.gson();
+    // Keeps tags from an earlier process or manager from matching after the counters restart.
+    private final String tagEpoch;
 
     public HttpTaskServer(TaskManager manager) throws IOException {
+        this(manager, DEFAULT_PORT, DEFAULT_BACKLOG, ExecutionMode.VIRTUAL, DEFAULT_POOL_SIZE);
+    }
+
+    public HttpTaskServer(TaskManager manager, int port, int backlog, ExecutionMode mode, int poolSize)
+            throws IOException {
+        this(manager, port, backlog, mode, poolSize, new CompressionFilter(), new ResponseCache());
+    }
+
+    public HttpTaskServer(TaskManager manager, int port, int backlog, ExecutionMode mode, int poolSize,
+                          CompressionFilter compression, ResponseCache cache) throws IOException {
+        this(manager, port, backlog, mode, poolSize, compression, cache, new AdmissionFilter());
+    }
+
+    // With a null compression filter every response goes out uncompressed, with a null cache
+    // every listing is serialized afresh, and with a null admission filter nothing is refused.
+    public HttpTaskServer(TaskManager manager, int port, int backlog, ExecutionMode mode, int poolSize,
+                          CompressionFilter compression, ResponseCache cache, AdmissionFilter admission)
+            throws IOException {
         this.manager = manager;
-        this.server = HttpServer.create(new InetSocketAddress(8080), 0);
+        this.port = port;
+        this.cache = cache;
+        this.events = new EventStream(manager, gson);
+        this.tagEpoch = Long.toString(System.currentTimeMillis(), 36)
+                + Integer.toString(System.identityHashCode(manager), 36);
+        this.server = HttpServer.create(new InetSocketAddress(port), backlog);
+        this.executor = executorFor(mode, poolSize);
+        server.setExecutor(executor);
 
-        server.createContext("/tasks", this::handleTasks);
-        server.createContext("/subtasks", this::handleSubtasks);
-        server.createContext("/epics", this::handleEpics);
-        server.createContext("/history", this::handleHistory);
-        server.createContext("/prioritized", this::handlePrioritized);
+        HttpContext context = server.createContext("/", routes());
+        if (admission != null) {
+            context.getFilters().add(admission);
+            metrics.counter("tracker_http_rejected_total", "Requests refused with 503 by admission control.",
+                    admission::getRejectedCount);
+            metrics.counter("tracker_http_throttled_total", "Requests refused with 429 by the per-client limit.",
+                    admission::getThrottledCount);
+        }
+        if (compression != null) {
+            context.getFilters().add(compression);
+        }
+        manager.addListener(events);
+        metrics.gauge("tracker_events_subscribers", "Open /events streams.", events::getSubscriberCount);
+        metrics.gauge("tracker_events_last_sequence", "Sequence of the latest manager change.",
+                manager::getLastSequence);
+        if (cache != null) {
+            manager.addListener(cache);
+            metrics.gauge("tracker_response_cache_bytes", "Bytes held by the response cache.", cache::getSizeBytes);
+            metrics.counter("tracker_response_cache_hits_total", "Response cache hits.", cache::getHits);
+            metrics.counter("tracker_response_cache_misses_total", "Response cache misses.", cache::getMisses);
+        }
     }
 
+    // Settings come from system properties: tracker.port, tracker.backlog,
+    // tracker.executor (single|pool|virtual), tracker.threads, tracker.gzip.level,
+    // tracker.gzip.threshold, tracker.cache.bytes (0 disables the response cache),
+    // tracker.admission.reads, tracker.admission.writes, tracker.admission.queued,
+    // tracker.admission.waitMs, tracker.client.rate (requests/s, 0 = off) and tracker.client.burst.
     public static void main(String[] args) throws IOException {
-        TaskManager tm = Managers.getDefault();
-        new HttpTaskServer(tm).start();
+        // The standalone server records views off the request thread.
+        TaskManager tm = new InMemoryTaskManager(Managers.getAsyncHistory(Managers.getPartitionedHistory(
+                Managers.DEFAULT_HISTORY_PER_VIEWER, Managers.DEFAULT_HISTORY_VIEWERS)));
+        ExecutionMode mode = ExecutionMode.valueOf(
+                System.getProperty("tracker.executor", ExecutionMode.VIRTUAL.name()).toUpperCase());
+        long cacheBytes = Long.getLong("tracker.cache.bytes", ResponseCache.DEFAULT_MAX_BYTES);
+        new HttpTaskServer(tm,
+                Integer.getInteger("tracker.port", DEFAULT_PORT),
+                Integer.getInteger("tracker.backlog", DEFAULT_BACKLOG),
+                mode,
+                Integer.getInteger("tracker.threads", DEFAULT_POOL_SIZE),
+                new CompressionFilter(
+                        Integer.getInteger("tracker.gzip.level", CompressionFilter.DEFAULT_LEVEL),
+                        Integer.getInteger("tracker.gzip.threshold", CompressionFilter.DEFAULT_THRESHOLD),
+                        Long.getLong("tracker.gzip.maxDecodedBytes", CompressionFilter.DEFAULT_MAX_DECODED_BYTES)),
+                cacheBytes > 0 ? new ResponseCache(cacheBytes) : null,
+                new AdmissionFilter(
+                        Integer.getInteger("tracker.admission.reads", AdmissionFilter.DEFAULT_MAX_READS),
+                        Integer.getInteger("tracker.admission.writes", AdmissionFilter.DEFAULT_MAX_WRITES),
+                        Integer.getInteger("tracker.admission.queued", AdmissionFilter.DEFAULT_MAX_QUEUED),
+                        Long.getLong("tracker.admission.waitMs", AdmissionFilter.DEFAULT_MAX_WAIT_MS))
+                        .perClient(Double.parseDouble(System.getProperty("tracker.client.rate", "0")),
+                                Integer.getInteger("tracker.client.burst", 0))).start();
     }
 
     public void start() {
         server.start();
-        System.out.println("HTTP server started on http://localhost:8080");
+        System.out.println("HTTP server started on http://localhost:" + port);
     }
 
     public void stop() {
+        manager.removeListener(events);
+        events.close();
         server.stop(0);
+        if (cache != null) {
+            manager.removeListener(cache);
+            cache.clear();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
-    private void handleTasks(HttpExchange h) throws IOException {
-        try {
-            String method = h.getRequestMethod();
-            String path = h.getRequestURI().getPath();
-
-            if ("GET".equals(method)) {
-                Integer id = parseId(path, "/tasks");
-                if (id == null) {
-                    List<Task> all = manager.getAllTasks();
-                    sendJson(h, 200, gson.toJson(all));
-                } else {
-                    Task t = manager.getTaskById(id);
-                    if (t == null) {
-                        notFound(h);
-                        return;
-                    }
-                    sendJson(h, 200, gson.toJson(t));
-                }
-                return;
-            }
+    // Null when the request has no list parameters, i.e. asks for the whole collection.
+    private static TaskQuery listQuery(Map<String, String> params) {
+        if (Collections.disjoint(params.keySet(), LIST_PARAMS)) {
+            return null;
+        }
+        TaskQuery query = new TaskQuery();
+        if (params.containsKey("limit")) {
+            query.limit(Integer.parseInt(params.get("limit")));
+        }
+        if (params.containsKey("status")) {
+            query.status(Status.valueOf(params.get("status").toUpperCase()));
+        }
+        if (params.containsKey("epicId")) {
+            query.epicId(Integer.parseInt(params.get("epicId")));
+        }
+        query.window(timeParam(params, "from"), timeParam(params, "to"));
+        query.sort(sortParam(params.get("sort")), "desc".equalsIgnoreCase(params.get("order")));
+        return query.cursor(params.get("cursor"));
+    }
 
-            if ("POST".equals(method)) {
-                String body = readBody(h);
-                Task incoming = JsonUtil.parseTask(body);
-                if (incoming == null) {
-                    sendText(h, 400, "Empty body");
-                    return;
-                }
+    private static LocalDateTime timeParam(Map<String, String> params, String name) {
+        String value = params.get(name);
+        return value == null || value.isEmpty() ? null : LocalDateTime.parse(value);
+    }
 
-                try {
-                    if (incoming.getId() <= 0) {
-                        int id = manager.createTask(incoming);
-                        Task created = manager.getTaskById(id);
-                        sendJson(h, 201, gson.toJson(created));
-                    } else {
-                        if (manager.getTaskById(incoming.getId()) == null) {
-                            notFound(h);
-                            return;
-                        }
-                        manager.updateTask(incoming);
-                        sendJson(h, 200, gson.toJson(manager.getTaskById(incoming.getId())));
-                    }
-                } catch (IllegalArgumentException | IllegalStateException overlap) {
-                    conflict406(h, overlap.getMessage());
-                }
-                return;
-            }
+    private static TaskSort sortParam(String value) {
+        if (value == null || value.isEmpty() || "id".equalsIgnoreCase(value)) {
+            return TaskSort.ID;
+        }
+        if ("start".equalsIgnoreCase(value) || "startTime".equalsIgnoreCase(value)) {
+            return TaskSort.START_TIME;
+        }
+        if ("title".equalsIgnoreCase(value)) {
+            return TaskSort.TITLE;
+        }
+        throw new IllegalArgumentException("Unknown sort: " + value);
+    }
 
-            if ("DELETE".equals(method)) {
-                Integer id = parseId(path, "/tasks");
-                if (id == null) {
-                    sendText(h, 400, "id required");
-                    return;
-                }
-                Task existed = manager.getTaskById(id);
-                if (existed == null) {
-                    notFound(h);
-                    return;
-                }
-                manager.deleteTaskById(id);
-                sendText(h, 200, "deleted");
-                return;
-            }
+    private String collectionTag(TaskType... types) {
+        StringBuilder sb = new StringBuilder("W/\"").append(tagEpoch);
+        for (TaskType type : types) {
+            sb.append('-').append(manager.getCollectionVersion(type));
+        }
+        return sb.append('"').toString();
+    }
 
-            sendText(h, 405, "Method Not Allowed");
-        } catch (Throwable ex) {
-            serverError(h, ex);
+    // Answers 304 when the client's tag is current, serves the cached bytes when the cache
+    // holds this tag, and otherwise streams the listing and keeps a copy.
+    private void sendList(HttpExchange h, Supplier<Object> listing, TaskType... dependsOn) throws IOException {
+        String tag = collectionTag(dependsOn);
+        if (notModified(h, tag)) {
+            return;
+        }
+        if (cache == null) {
+            streamJson(h, 200, gson, listing.get());
+            return;
+        }
+        String query = h.getRequestURI().getRawQuery();
+        String key = query == null ? h.getRequestURI().getPath() : h.getRequestURI().getPath() + '?' + query;
+        ResponseCache.Entry hit = cache.get(key, tag);
+        if (hit != null) {
+            cache.send(h, hit, 200);
+            return;
+        }
+        byte[] json = streamJson(h, 200, gson, listing.get(), cache.getMaxEntryBytes());
+        if (json != null) {
+            cache.put(key, tag, json, dependsOn);
         }
     }
 
-    private void handleSubtasks(HttpExchange h) throws IOException {
-        try {
-            String method = h.getRequestMethod();
-            String path = h.getRequestURI().getPath();
+    private String entityTag(Task entity) {
+        return "W/\"" + tagEpoch + "-" + entity.getId() + "." + entity.getVersion() + '"';
+    }
 
-            if ("GET".equals(method)) {
-                Integer id = parseId(path, "/subtasks");
-                if (id == null) {
-                    sendJson(h, 200, gson.toJson(manager.getAllSubtasks()));
-                } else {
-                    Subtask s = manager.getSubtaskById(id);
-                    if (s == null) {
-                        notFound(h);
-                        return;
-                    }
-                    sendJson(h, 200, gson.toJson(s));
-                }
-                return;
+    // Null keeps the built-in behaviour of handling requests on the dispatcher thread.
+    private static ExecutorService executorFor(ExecutionMode mode, int poolSize) {
+        if (mode == ExecutionMode.SINGLE) {
+            return null;
+        }
+        if (mode == ExecutionMode.VIRTUAL) {
+            try {
+                // Looked up reflectively so the server still builds and runs on JDK 17.
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException unsupported) {
+                // Pre-21 runtime: use the bounded pool instead.
             }
+        }
+        if (poolSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + poolSize);
+        }
+        // When the queue is full the dispatcher runs the request itself, which stops it accepting
+        // more connections until there is room again.
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize * POOL_QUEUE_PER_THREAD), new ThreadPoolExecutor.CallerRunsPolicy());
+    }
 
-            if ("POST".equals(method)) {
-                String body = readBody(h);
-                Subtask incoming = JsonUtil.parseSubtask(body);
-                if (incoming == null) {
-                    sendText(h, 400, "Empty body");
-                    return;
-                }
-                if (incoming.getId() <= 0 &&
-                        (incoming.getEpicId() <= 0 || manager.getEpicById(incoming.getEpicId()) == null)) {
-                    notFound(h);
-                    return;
-                }
+    private Router routes() {
+        return new Router(metrics)
+                .add("GET", "/tasks", this::listTasks)
+                .add("GET", "/tasks/{id}", this::getTask)
+                .add("POST", "/tasks", this::postTask)
+                .add("DELETE", "/tasks", HttpTaskServer::idRequired)
+                .add("DELETE", "/tasks/{id}", this::deleteTask)
+                .add("GET", "/subtasks", this::listSubtasks)
+                .add("GET", "/subtasks/{id}", this::getSubtask)
+                .add("POST", "/subtasks", this::postSubtask)
+                .add("DELETE", "/subtasks", HttpTaskServer::idRequired)
+                .add("DELETE", "/subtasks/{id}", this::deleteSubtask)
+                .add("GET", "/epics", this::listEpics)
+                .add("GET", "/epics/{id}", this::getEpic)
+                .add("GET", "/epics/{id}/subtasks", this::listEpicSubtasks)
+                .add("POST", "/epics", this::postEpic)
+                .add("DELETE", "/epics", HttpTaskServer::idRequired)
+                .add("DELETE", "/epics/{id}", this::deleteEpic)
+                .add("GET", "/history", this::getHistory)
+                .add("GET", "/history/top", this::getTopViewed)
+                .add("GET", "/prioritized", this::listPrioritized)
+                .add("GET", "/events", this::subscribeEvents)
+                .add("GET", "/changes", this::getChanges)
+                .add("GET", "/metrics", this::scrapeMetrics);
+    }
 
-                try {
-                    if (incoming.getId() <= 0) {
-                        int id = manager.createSubtask(incoming);
-                        sendJson(h, 201, gson.toJson(manager.getSubtaskById(id)));
-                    } else {
-                        if (manager.getSubtaskById(incoming.getId()) == null) {
-                            notFound(h);
-                            return;
-                        }
-                        manager.updateSubtask(incoming);
-                        sendJson(h, 200, gson.toJson(manager.getSubtaskById(incoming.getId())));
-                    }
-                } catch (IllegalArgumentException | IllegalStateException overlap) {
-                    conflict406(h, overlap.getMessage());
-                }
-                return;
-            }
+    private static void idRequired(HttpExchange h, int id) throws IOException {
+        sendText(h, 400, "id required");
+    }
 
-            if ("DELETE".equals(method)) {
-                Integer id = parseId(path, "/subtasks");
-                if (id == null) {
-                    sendText(h, 400, "id required");
-                    return;
-                }
-                if (manager.getSubtaskById(id) == null) {
+    // The listing gets a null query when the request has no list parameters.
+    private void sendQueried(HttpExchange h, Function<TaskQuery, Object> listing, TaskType... dependsOn)
+            throws IOException {
+        TaskQuery query;
+        try {
+            query = listQuery(queryParams(h));
+        } catch (IllegalArgumentException | DateTimeException bad) {
+            sendText(h, 400, "Bad list parameters: " + bad.getMessage());
+            return;
+        }
+        sendList(h, () -> listing.apply(query), dependsOn);
+    }
+
+    // Task
+
+    private void listTasks(HttpExchange h, int unused) throws IOException {
+        sendQueried(h, q -> q == null ? manager.getAllTasks() : manager.queryTasks(q), TaskType.TASK);
+    }
+
+    private void getTask(HttpExchange h, int id) throws IOException {
+        // A revalidated entity is not counted as a view.
+        Task current = manager.peekTask(id);
+        if (current != null && notModified(h, entityTag(current))) {
+            return;
+        }
+        Task t = manager.getTaskById(id, viewerOf(h));
+        if (t == null) {
+            notFound(h);
+            return;
+        }
+        sendJson(h, 200, gson.toJson(t));
+    }
+
+    private void postTask(HttpExchange h, int unused) throws IOException {
+        Task incoming;
+        try (InputStream body = h.getRequestBody()) {
+            incoming = JsonUtil.parseTask(body);
+        }
+        if (incoming == null) {
+            sendText(h, 400, "Empty body");
+            return;
+        }
+
+        try {
+            if (incoming.getId() <= 0) {
+                int id = manager.createTask(incoming);
+                sendJson(h, 201, gson.toJson(manager.peekTask(id)));
+            } else {
+                if (!manager.containsTask(incoming.getId())) {
                     notFound(h);
                     return;
                 }
-                manager.deleteSubtaskById(id);
-                sendText(h, 200, "deleted");
-                return;
+                if (incoming.getVersion() > 0) {
+                    manager.updateTask(incoming, incoming.getVersion());
+                } else {
+                    manager.updateTask(incoming);
+                }
+                sendJson(h, 200, gson.toJson(manager.peekTask(incoming.getId())));
             }
+        } catch (VersionConflictException stale) {
+            versionConflict(h, stale.getMessage());
+        } catch (IllegalArgumentException | IllegalStateException overlap) {
+            conflict406(h, overlap.getMessage());
+        }
+    }
 
-            sendText(h, 405, "Method Not Allowed");
-        } catch (Throwable ex) {
-            serverError(h, ex);
+    private void deleteTask(HttpExchange h, int id) throws IOException {
+        if (!manager.containsTask(id)) {
+            notFound(h);
+            return;
         }
+        manager.deleteTaskById(id);
+        sendText(h, 200, "deleted");
     }
 
-    private void handleEpics(HttpExchange h) throws IOException {
+    // Subtask
+
+    private void listSubtasks(HttpExchange h, int unused) throws IOException {
+        sendQueried(h, q -> q == null ? manager.getAllSubtasks() : manager.querySubtasks(q), TaskType.SUBTASK);
+    }
+
+    private void getSubtask(HttpExchange h, int id) throws IOException {
+        Subtask current = manager.peekSubtask(id);
+        if (current != null && notModified(h, entityTag(current))) {
+            return;
+        }
+        Subtask s = manager.getSubtaskById(id, viewerOf(h));
+        if (s == null) {
+            notFound(h);
+            return;
+        }
+        sendJson(h, 200, gson.toJson(s));
+    }
+
+    private void postSubtask(HttpExchange h, int unused) throws IOException {
+        Subtask incoming;
+        try (InputStream body = h.getRequestBody()) {
+            incoming = JsonUtil.parseSubtask(body);
+        }
+        if (incoming == null) {
+            sendText(h, 400, "Empty body");
+            return;
+        }
+        if (incoming.getId() <= 0 &&
+                (incoming.getEpicId() <= 0 || !manager.containsEpic(incoming.getEpicId()))) {
+            notFound(h);
+            return;
+        }
+
         try {
-            String method = h.getRequestMethod();
-            String path = h.getRequestURI().getPath();
-
-            if ("GET".equals(method)) {
-                if (path.matches("^/epics/\\d+/subtasks/?$")) {
-                    Integer id = parseId(path, "/epics");
-                    if (id == null) {
-                        sendText(h, 400, "id required");
-                        return;
-                    }
-                    if (manager.getEpicById(id) == null) {
-                        notFound(h);
-                        return;
-                    }
-                    sendJson(h, 200, gson.toJson(manager.getSubtasksByEpic(id)));
+            if (incoming.getId() <= 0) {
+                int id = manager.createSubtask(incoming);
+                sendJson(h, 201, gson.toJson(manager.peekSubtask(id)));
+            } else {
+                if (!manager.containsSubtask(incoming.getId())) {
+                    notFound(h);
                     return;
                 }
-
-                Integer id = parseId(path, "/epics");
-                if (id == null) {
-                    sendJson(h, 200, gson.toJson(manager.getAllEpics()));
+                if (incoming.getVersion() > 0) {
+                    manager.updateSubtask(incoming, incoming.getVersion());
                 } else {
-                    Epic e = manager.getEpicById(id);
-                    if (e == null) {
-                        notFound(h);
-                        return;
-                    }
-                    sendJson(h, 200, gson.toJson(e));
+                    manager.updateSubtask(incoming);
                 }
-                return;
+                sendJson(h, 200, gson.toJson(manager.peekSubtask(incoming.getId())));
             }
+        } catch (VersionConflictException stale) {
+            versionConflict(h, stale.getMessage());
+        } catch (IllegalArgumentException | IllegalStateException overlap) {
+            conflict406(h, overlap.getMessage());
+        }
+    }
 
-            if ("POST".equals(method)) {
-                String body = readBody(h);
-                Epic incoming = JsonUtil.parseEpic(body);
-                if (incoming == null) {
-                    sendText(h, 400, "Empty body");
-                    return;
-                }
+    private void deleteSubtask(HttpExchange h, int id) throws IOException {
+        if (!manager.containsSubtask(id)) {
+            notFound(h);
+            return;
+        }
+        manager.deleteSubtaskById(id);
+        sendText(h, 200, "deleted");
+    }
+
+    // Epic
+
+    private void listEpics(HttpExchange h, int unused) throws IOException {
+        sendQueried(h, q -> q == null ? manager.getAllEpics() : manager.queryEpics(q), TaskType.EPIC);
+    }
+
+    private void getEpic(HttpExchange h, int id) throws IOException {
+        Epic current = manager.peekEpic(id);
+        if (current != null && notModified(h, entityTag(current))) {
+            return;
+        }
+        Epic e = manager.getEpicById(id, viewerOf(h));
+        if (e == null) {
+            notFound(h);
+            return;
+        }
+        sendJson(h, 200, gson.toJson(e));
+    }
+
+    private void listEpicSubtasks(HttpExchange h, int id) throws IOException {
+        if (!manager.containsEpic(id)) {
+            notFound(h);
+            return;
+        }
+        sendList(h, () -> manager.getSubtasksByEpic(id), TaskType.SUBTASK);
+    }
 
-                if (incoming.getId() <= 0) {
-                    int id = manager.createEpic(incoming);
-                    sendJson(h, 201, gson.toJson(manager.getEpicById(id)));
+    private void postEpic(HttpExchange h, int unused) throws IOException {
+        Epic incoming;
+        try (InputStream body = h.getRequestBody()) {
+            incoming = JsonUtil.parseEpic(body);
+        }
+        if (incoming == null) {
+            sendText(h, 400, "Empty body");
+            return;
+        }
+
+        if (incoming.getId() <= 0) {
+            int id = manager.createEpic(incoming);
+            sendJson(h, 201, gson.toJson(manager.peekEpic(id)));
+        } else {
+            if (!manager.containsEpic(incoming.getId())) {
+                notFound(h);
+                return;
+            }
+            try {
+                if (incoming.getVersion() > 0) {
+                    manager.updateEpic(incoming, incoming.getVersion());
                 } else {
-                    if (manager.getEpicById(incoming.getId()) == null) {
-                        notFound(h);
-                        return;
-                    }
                     manager.updateEpic(incoming);
-                    sendJson(h, 200, gson.toJson(manager.getEpicById(incoming.getId())));
                 }
+            } catch (VersionConflictException stale) {
+                versionConflict(h, stale.getMessage());
                 return;
             }
+            sendJson(h, 200, gson.toJson(manager.peekEpic(incoming.getId())));
+        }
+    }
 
-            if ("DELETE".equals(method)) {
-                Integer id = parseId(path, "/epics");
-                if (id == null) {
-                    sendText(h, 400, "id required");
-                    return;
-                }
-                if (manager.getEpicById(id) == null) {
-                    notFound(h);
-                    return;
-                }
-                manager.deleteEpicById(id);
-                sendText(h, 200, "deleted");
-                return;
-            }
+    private void deleteEpic(HttpExchange h, int id) throws IOException {
+        if (!manager.containsEpic(id)) {
+            notFound(h);
+            return;
+        }
+        manager.deleteEpicById(id);
+        sendText(h, 200, "deleted");
+    }
+
+    // History
+
+    private void getHistory(HttpExchange h, int unused) throws IOException {
+        Map<String, String> query = queryParams(h);
+        if (!query.containsKey("limit") && !query.containsKey("cursor") && !query.containsKey("order")) {
+            streamJson(h, 200, gson, manager.getHistory(viewerOf(h)));
+            return;
+        }
+        HistoryOrder order;
+        int limit;
+        try {
+            order = "oldest".equalsIgnoreCase(query.get("order"))
+                    ? HistoryOrder.OLDEST_FIRST : HistoryOrder.NEWEST_FIRST;
+            limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_HISTORY_PAGE;
+        } catch (NumberFormatException e) {
+            sendText(h, 400, "limit must be a number");
+            return;
+        }
+        try {
+            HistoryPage page = manager.getHistoryPage(viewerOf(h), order, limit, query.get("cursor"));
+            streamJson(h, 200, gson, page);
+        } catch (IllegalArgumentException badPage) {
+            sendText(h, 400, badPage.getMessage());
+        }
+    }
 
-            sendText(h, 405, "Method Not Allowed");
-        } catch (Throwable ex) {
-            serverError(h, ex);
+    private void getTopViewed(HttpExchange h, int unused) throws IOException {
+        Map<String, String> query = queryParams(h);
+        int limit;
+        TaskType type;
+        try {
+            limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_TOP_VIEWED;
+            type = query.containsKey("type") ? TaskType.valueOf(query.get("type").toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            sendText(h, 400, "Bad limit or type");
+            return;
+        }
+        if (limit <= 0) {
+            sendText(h, 400, "limit must be positive");
+            return;
         }
+        streamJson(h, 200, gson, manager.getTopViewed(limit, type));
+    }
+
+    private void listPrioritized(HttpExchange h, int unused) throws IOException {
+        sendQueried(h, q -> q == null ? manager.getPrioritizedTasks() : manager.queryPrioritized(q),
+                TaskType.TASK, TaskType.SUBTASK);
     }
 
-    private void handleHistory(HttpExchange h) throws IOException {
+    // Events
+
+    // Resumes after Last-Event-ID, or after ?since= for clients that cannot set headers.
+    private void subscribeEvents(HttpExchange h, int unused) throws IOException {
+        String last = h.getRequestHeaders().getFirst("Last-Event-ID");
+        if (last == null) {
+            last = queryParams(h).get("since");
+        }
+        long lastEventId;
         try {
-            if (!"GET".equals(h.getRequestMethod())) {
-                sendText(h, 405, "Method Not Allowed");
-                return;
-            }
-            sendJson(h, 200, gson.toJson(manager.getHistory()));
-        } catch (Throwable ex) {
-            serverError(h, ex);
+            lastEventId = last == null || last.isBlank() ? -1 : Long.parseLong(last.trim());
+        } catch (NumberFormatException e) {
+            sendText(h, 400, "Last-Event-ID must be a number");
+            return;
         }
+        events.subscribe(h, lastEventId);
     }
 
-    private void handlePrioritized(HttpExchange h) throws IOException {
+    private void getChanges(HttpExchange h, int unused) throws IOException {
+        Map<String, String> query = queryParams(h);
+        long since;
+        int limit;
         try {
-            if (!"GET".equals(h.getRequestMethod())) {
-                sendText(h, 405, "Method Not Allowed");
-                return;
-            }
-            sendJson(h, 200, gson.toJson(manager.getPrioritizedTasks()));
-        } catch (Throwable ex) {
-            serverError(h, ex);
+            since = query.containsKey("since") ? Long.parseLong(query.get("since")) : 0;
+            limit = query.containsKey("limit") ? Integer.parseInt(query.get("limit")) : DEFAULT_CHANGES_PAGE;
+        } catch (NumberFormatException e) {
+            sendText(h, 400, "since and limit must be numbers");
+            return;
+        }
+        if (limit <= 0) {
+            sendText(h, 400, "limit must be positive");
+            return;
         }
+        streamJson(h, 200, gson, manager.getChangesSince(since, limit));
+    }
+
+    private void scrapeMetrics(HttpExchange h, int unused) throws IOException {
+        send(h, 200, metrics.scrape(), "text/plain; version=0.0.4");
     }
 }
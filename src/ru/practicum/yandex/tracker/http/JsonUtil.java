@@ -1,12 +1,26 @@
 package ru.practicum.yandex.tracker.http;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import ru.practicum.yandex.tracker.model.Epic;
 import ru.practicum.yandex.tracker.model.Subtask;
 import ru.practicum.yandex.tracker.model.Task;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 
 public final class JsonUtil {
     private JsonUtil() {
@@ -21,103 +35,240 @@ public final class JsonUtil {
                     v == null ? JsonNull.INSTANCE : new JsonPrimitive(v.toMinutes()))
             .create();
 
-    private static boolean has(JsonObject o, String k) {
-        return o.has(k) && !o.get(k).isJsonNull();
-    }
+    // Request bodies are read in one token pass; aliases are ranked by their position in the
+    // lists below, so "description" wins over "desc" whatever order they arrive in.
+    public static final TypeAdapter<Task> TASK = new EntityAdapter<>() {
+        @Override
+        Task build(Fields f) {
+            Task t = new Task(f.id, f.title, f.description);
+            f.applyTo(t);
+            return t;
+        }
+    };
+
+    public static final TypeAdapter<Subtask> SUBTASK = new EntityAdapter<>() {
+        @Override
+        Subtask build(Fields f) {
+            Subtask s = new Subtask(f.id, f.title, f.description, f.epicId);
+            f.applyTo(s);
+            return s;
+        }
+    };
 
-    private static String str(JsonObject o, String... keys) {
-        for (String k : keys) {
-            if (has(o, k)) {
-                return o.get(k).getAsString();
+    public static final TypeAdapter<Epic> EPIC = new EntityAdapter<>() {
+        @Override
+        Epic build(Fields f) {
+            Epic e = new Epic(f.id, f.title, f.description);
+            e.setVersion(f.version);
+            return e;
+        }
+    };
+
+    private static final class Fields {
+        int id;
+        String title = "";
+        String description = "";
+        int descriptionRank = Integer.MAX_VALUE;
+        int epicId;
+        long version;
+        LocalDateTime start;
+        int startRank = Integer.MAX_VALUE;
+        Long minutes;
+        int minutesRank = Integer.MAX_VALUE;
+
+        void applyTo(Task t) {
+            t.setVersion(version);
+            if (minutes != null) {
+                t.setDuration(Duration.ofMinutes(minutes));
+            }
+            if (start != null) {
+                t.setStartTime(start);
             }
         }
-        return "";
     }
 
-    private static Integer num(JsonObject o, String k) {
-        return has(o, k) ? o.get(k).getAsInt() : null;
-    }
+    private abstract static class EntityAdapter<T extends Task> extends TypeAdapter<T> {
+        abstract T build(Fields f);
 
-    private static Long numL(JsonObject o, String... keys) {
-        for (String k : keys) {
-            if (!has(o, k)) continue;
-            try {
-                return o.get(k).getAsLong();
-            } catch (Exception ignore) {
-                try {
-                    String s = o.get(k).getAsString();
-                    return java.time.Duration.parse(s).toMinutes();
-                } catch (Exception ignore2) {
+        @Override
+        public T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Fields f = new Fields();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "id" -> f.id = (int) readLong(in);
+                    case "title" -> f.title = readString(in);
+                    case "epicId" -> f.epicId = (int) readLong(in);
+                    case "version" -> f.version = readLong(in);
+                    case "description", "desc" -> {
+                        int rank = "description".equals(name) ? 0 : 1;
+                        String value = readString(in);
+                        if (rank < f.descriptionRank) {
+                            f.description = value;
+                            f.descriptionRank = rank;
+                        }
+                    }
+                    case "start", "startTime" -> {
+                        int rank = "start".equals(name) ? 0 : 1;
+                        String value = readString(in);
+                        if (rank < f.startRank) {
+                            f.start = value.isEmpty() ? null : LocalDateTime.parse(value);
+                            f.startRank = rank;
+                        }
+                    }
+                    case "durationMinutes", "duration", "dur" -> {
+                        int rank = "durationMinutes".equals(name) ? 0 : "duration".equals(name) ? 1 : 2;
+                        Long value = readMinutes(in);
+                        // An unreadable value leaves room for a lower-ranked alias.
+                        if (value != null && rank < f.minutesRank) {
+                            f.minutes = value;
+                            f.minutesRank = rank;
+                        }
+                    }
+                    default -> in.skipValue();
                 }
             }
+            in.endObject();
+            return build(f);
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            GSON.toJson(value, value == null ? Task.class : value.getClass(), out);
         }
-        return null;
     }
 
-    private static LocalDateTime time(JsonObject o, String... keys) {
-        String s = str(o, keys);
-        return s.isEmpty() ? null : LocalDateTime.parse(s);
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return String.valueOf(in.nextBoolean());
+        }
+        return in.nextString();
     }
 
-    public static Epic parseEpic(String json) {
-        try {
-            JsonObject j = JsonParser.parseString(json).getAsJsonObject();
-            int id = num(j, "id") == null ? 0 : num(j, "id");
-            String title = str(j, "title");
-            String desc = str(j, "description", "desc");
-            return new Epic(id, title, desc);
-        } catch (Exception e) {
-            return null;
+    private static long readLong(JsonReader in) throws IOException {
+        String s = in.nextString();
+        Long value = wholeNumber(s.trim());
+        if (value == null) {
+            throw new JsonSyntaxException("Expected a whole number but was \"" + s + "\"");
         }
+        return value;
     }
 
-    public static Subtask parseSubtask(String json) {
-        JsonObject j = JsonParser.parseString(json).getAsJsonObject();
-        int id = num(j, "id") == null ? 0 : num(j, "id");
-        String ttl = str(j, "title");
-        String dsc = str(j, "description", "desc");
-        int epicId = num(j, "epicId") == null ? 0 : num(j, "epicId");
+    // Plain numbers are minutes; strings may also be ISO-8601 durations such as "PT45M".
+    private static Long readMinutes(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+            in.skipValue();
+            return null;
+        }
+        String s = in.nextString().trim();
+        if (s.length() > 1 && (s.charAt(0) == 'P' || s.charAt(0) == 'p')) {
+            try {
+                return Duration.parse(s).toMinutes();
+            } catch (DateTimeParseException | ArithmeticException malformed) {
+                return null;
+            }
+        }
+        return wholeNumber(s);
+    }
 
-        Subtask s = new Subtask(id, ttl, dsc, epicId);
+    // A decimal number truncated towards zero, or null if `s` is not one or does not fit a long.
+    private static Long wholeNumber(String s) {
+        try {
+            return Long.parseLong(s);
+        } catch (NumberFormatException notPlain) {
+            // Fractions and exponents go through BigDecimal below.
+        }
+        BigDecimal d;
+        try {
+            d = new BigDecimal(s);
+        } catch (NumberFormatException malformed) {
+            return null;
+        }
+        // Checked before rescaling, which is expensive for extreme exponents.
+        int integerDigits = d.precision() - d.scale();
+        if (integerDigits <= 0) {
+            return 0L;
+        }
+        if (integerDigits > 19) {
+            return null;
+        }
+        try {
+            return d.setScale(0, RoundingMode.DOWN).longValueExact();
+        } catch (ArithmeticException overflow) {
+            return null;
+        }
+    }
 
-        java.time.Duration d = duration(j);
-        if (d != null) {
-            s.setDuration(d);
+    // Null for an empty or whitespace-only body.
+    private static <T extends Task> T read(Reader source, TypeAdapter<T> adapter) {
+        try {
+            PushbackReader reader = new PushbackReader(source, 1);
+            int c;
+            do {
+                c = reader.read();
+            } while (c != -1 && Character.isWhitespace(c));
+            if (c == -1) {
+                return null;
+            }
+            reader.unread(c);
+            JsonReader json = new JsonReader(reader);
+            json.setStrictness(Strictness.LENIENT);
+            return adapter.read(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        LocalDateTime st = time(j, "start", "startTime");
-        if (st != null) {
-            s.setStartTime(st);
+    private static Reader utf8(InputStream in) {
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    // A body that could not be read is not a malformed epic; only the latter reads as null.
+    public static Epic parseEpic(InputStream body) {
+        try {
+            return read(utf8(body), EPIC);
+        } catch (UncheckedIOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return null;
         }
-        return s;
     }
 
-    public static Task parseTask(String json) {
-        JsonObject j = JsonParser.parseString(json).getAsJsonObject();
-        int id = num(j, "id") == null ? 0 : num(j, "id");
-        String title = str(j, "title");
-        String desc = str(j, "description", "desc");
+    public static Subtask parseSubtask(InputStream body) {
+        return read(utf8(body), SUBTASK);
+    }
 
-        Task t = new Task(id, title, desc);
+    public static Task parseTask(InputStream body) {
+        return read(utf8(body), TASK);
+    }
 
-        java.time.Duration d = duration(j);
-        if (d != null) {
-            t.setDuration(d);
+    public static Epic parseEpic(String json) {
+        try {
+            return read(new StringReader(json), EPIC);
+        } catch (RuntimeException e) {
+            return null;
         }
+    }
 
-        LocalDateTime st = time(j, "start", "startTime");
-        if (st != null) {
-            t.setStartTime(st);
-        }
-        return t;
+    public static Subtask parseSubtask(String json) {
+        return read(new StringReader(json), SUBTASK);
     }
 
-    public static Gson gson() {
-        return GSON;
+    public static Task parseTask(String json) {
+        return read(new StringReader(json), TASK);
     }
 
-    private static Duration duration(JsonObject o) {
-        Long mins = numL(o, "durationMinutes", "duration", "dur");
-        return mins == null ? null : java.time.Duration.ofMinutes(mins);
+    public static Gson gson() {
+        return GSON;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,82 @@
+package ru.practicum.yandex.tracker.http;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// HdrHistogram-style log-linear buckets over the whole non-negative long range: 2^SUB_BITS
+// sub-buckets per power of two, so a quantile is off by at most 1/2^SUB_BITS of its value.
+// Recording is two atomic adds; quantiles are computed from a copy of the counts.
+final class LogHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB);
+    private final LongAdder sum = new LongAdder();
+
+    void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        sum.add(v);
+    }
+
+    long sum() {
+        return sum.sum();
+    }
+
+    Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total);
+    }
+
+    static int index(long v) {
+        if (v < SUB) {
+            return (int) v;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >>> (msb - SUB_BITS)) & (SUB - 1);
+        return (msb - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB) {
+            return index;
+        }
+        int msb = index / SUB + SUB_BITS - 1;
+        return (1L << msb) | ((long) (index % SUB) << (msb - SUB_BITS));
+    }
+
+    static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        Snapshot(long[] counts, long total) {
+            this.counts = counts;
+            this.total = total;
+        }
+
+        long count() {
+            return total;
+        }
+
+        // Upper bound of the bucket holding the q-th value; 0 when nothing was recorded.
+        long quantile(double q) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i + 1 < counts.length ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                }
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ru.practicum.yandex.tracker.http;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Request metrics in Prometheus text format. Series are created per route template and method
+// when routes are registered, so recording never looks anything up and only touches adders
+// and atomic arrays.
+public final class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final List<RouteMetrics> routes = new CopyOnWriteArrayList<>();
+    private final Map<String, Sampled> sampled = new ConcurrentHashMap<>();
+
+    static final class RouteMetrics {
+        final String method;
+        final String route;
+        final LongAdder[] byStatus = new LongAdder[STATUS_CLASSES.length];
+        final LongAdder inFlight = new LongAdder();
+        final LogHistogram latencyNanos = new LogHistogram();
+        final LogHistogram responseBytes = new LogHistogram();
+
+        RouteMetrics(String method, String route) {
+            this.method = method;
+            this.route = route;
+            for (int i = 0; i < byStatus.length; i++) {
+                byStatus[i] = new LongAdder();
+            }
+        }
+
+        void begin() {
+            inFlight.increment();
+        }
+
+        void end(int status, long nanos, long bytes) {
+            inFlight.decrement();
+            int statusClass = status / 100 - 1;
+            byStatus[statusClass >= 0 && statusClass < byStatus.length ? statusClass : 4].increment();
+            latencyNanos.record(nanos);
+            responseBytes.record(bytes);
+        }
+    }
+
+    // A value owned elsewhere and read at scrape time.
+    private static final class Sampled {
+        final String type;
+        final String help;
+        final LongSupplier value;
+
+        Sampled(String type, String help, LongSupplier value) {
+            this.type = type;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    RouteMetrics route(String method, String route) {
+        RouteMetrics metrics = new RouteMetrics(method, route);
+        routes.add(metrics);
+        return metrics;
+    }
+
+    public void gauge(String name, String help, LongSupplier value) {
+        sampled.put(name, new Sampled("gauge", help, value));
+    }
+
+    public void counter(String name, String help, LongSupplier value) {
+        sampled.put(name, new Sampled("counter", help, value));
+    }
+
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        header(sb, "tracker_http_requests_total", "counter", "Requests by route, method and status class.");
+        for (RouteMetrics m : routes) {
+            for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                long n = m.byStatus[i].sum();
+                if (n > 0) {
+                    sb.append("tracker_http_requests_total");
+                    labels(sb, m, "status", STATUS_CLASSES[i]);
+                    sb.append(' ').append(n).append('\n');
+                }
+            }
+        }
+        header(sb, "tracker_http_in_flight_requests", "gauge", "Requests currently being handled.");
+        for (RouteMetrics m : routes) {
+            sb.append("tracker_http_in_flight_requests");
+            labels(sb, m, null, null);
+            sb.append(' ').append(m.inFlight.sum()).append('\n');
+        }
+        summary(sb, "tracker_http_request_duration_seconds", "Time spent in the handler.", true);
+        summary(sb, "tracker_http_response_size_bytes", "Response body bytes as sent.", false);
+        for (Map.Entry<String, Sampled> g : sampled.entrySet()) {
+            header(sb, g.getKey(), g.getValue().type, g.getValue().help);
+            sb.append(g.getKey()).append(' ').append(g.getValue().value.getAsLong()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private void summary(StringBuilder sb, String name, String help, boolean seconds) {
+        header(sb, name, "summary", help);
+        for (RouteMetrics m : routes) {
+            LogHistogram histogram = seconds ? m.latencyNanos : m.responseBytes;
+            LogHistogram.Snapshot snap = histogram.snapshot();
+            if (snap.count() == 0) {
+                continue;
+            }
+            for (double q : QUANTILES) {
+                sb.append(name);
+                labels(sb, m, "quantile", String.valueOf(q));
+                sb.append(' ').append(format(snap.quantile(q), seconds)).append('\n');
+            }
+            sb.append(name).append("_sum");
+            labels(sb, m, null, null);
+            sb.append(' ').append(format(histogram.sum(), seconds)).append('\n');
+            sb.append(name).append("_count");
+            labels(sb, m, null, null);
+            sb.append(' ').append(snap.count()).append('\n');
+        }
+    }
+
+    private static String format(long value, boolean nanosToSeconds) {
+        return nanosToSeconds ? String.format(Locale.ROOT, "%.9f", value / 1e9) : Long.toString(value);
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void labels(StringBuilder sb, RouteMetrics m, String extraName, String extraValue) {
+        sb.append("{route=\"").append(escape(m.route)).append("\",method=\"").append(escape(m.method)).append('"');
+        if (extraName != null) {
+            sb.append(',').append(extraName).append("=\"").append(escape(extraValue)).append('"');
+        }
+        sb.append('}');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,191 @@
+package ru.practicum.yandex.tracker.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import ru.practicum.yandex.tracker.manager.TaskEvent;
+import ru.practicum.yandex.tracker.manager.TaskEventListener;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+// Encoded list responses keyed by path and query. Each entry is stored under the ETag it was
+// built for, so an entry that raced with a change is never served, and change events drop
+// the entries that depend on the changed type. Entries are also filed under each type they
+// depend on, so an event, which arrives under the manager lock, only touches the entries it
+// drops. Compressed variants are made on first demand and count against the same byte budget.
+public final class ResponseCache implements TaskEventListener {
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final Map<TaskType, Set<Entry>> byType = new EnumMap<>(TaskType.class);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    static final class Entry {
+        final String key;
+        final String tag;
+        final Set<TaskType> dependsOn;
+        final byte[] identity;
+        final Map<String, byte[]> encoded = new LinkedHashMap<>(2);
+
+        Entry(String key, String tag, Set<TaskType> dependsOn, byte[] identity) {
+            this.key = key;
+            this.tag = tag;
+            this.dependsOn = dependsOn;
+            this.identity = identity;
+        }
+
+        long size() {
+            long size = identity.length;
+            for (byte[] variant : encoded.values()) {
+                size += variant.length;
+            }
+            return size;
+        }
+    }
+
+    public ResponseCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public ResponseCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache budget must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        // A single listing may take at most an eighth of the budget.
+        this.maxEntryBytes = (int) Math.min(Integer.MAX_VALUE - 8, maxBytes / 8);
+        for (TaskType type : TaskType.values()) {
+            byType.put(type, new HashSet<>());
+        }
+    }
+
+    public synchronized long getSizeBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    synchronized Entry get(String key, String tag) {
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.tag.equals(tag)) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    synchronized void put(String key, String tag, byte[] json, TaskType... dependsOn) {
+        if (json.length > maxEntryBytes) {
+            return;
+        }
+        remove(key);
+        Set<TaskType> types = EnumSet.noneOf(TaskType.class);
+        for (TaskType type : dependsOn) {
+            types.add(type);
+        }
+        Entry entry = new Entry(key, tag, types, json);
+        entries.put(key, entry);
+        for (TaskType type : types) {
+            byType.get(type).add(entry);
+        }
+        bytes += json.length;
+        evict();
+    }
+
+    // Sends the entry as fixed-length bytes, compressing once per encoding when the client
+    // accepts it and the body reaches the filter's threshold.
+    void send(HttpExchange h, Entry entry, int code) throws IOException {
+        CompressionFilter.Negotiated nc =
+                (CompressionFilter.Negotiated) h.getAttribute(CompressionFilter.ATTRIBUTE);
+        if (nc == null || entry.identity.length < nc.filter.getThreshold()) {
+            BaseHttpHandler.sendBytes(h, code, entry.identity, null);
+            return;
+        }
+        byte[] body;
+        synchronized (this) {
+            body = entry.encoded.get(nc.encoding);
+        }
+        if (body == null) {
+            body = nc.filter.compress(entry.identity, nc.encoding);
+            synchronized (this) {
+                if (entry.encoded.putIfAbsent(nc.encoding, body) == null && entries.get(entry.key) == entry) {
+                    bytes += body.length;
+                    evict();
+                }
+            }
+        }
+        BaseHttpHandler.sendBytes(h, code, body, nc.encoding);
+    }
+
+    // The whole bucket for the type goes at once; entries in it that also depend on another
+    // type are taken out of that bucket too.
+    @Override
+    public synchronized void onEvent(TaskEvent event) {
+        Set<Entry> dropped = byType.put(event.getEntityType(), new HashSet<>());
+        if (dropped == null) {
+            return;
+        }
+        for (Entry entry : dropped) {
+            entries.remove(entry.key);
+            bytes -= entry.size();
+            unfile(entry);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        for (Set<Entry> bucket : byType.values()) {
+            bucket.clear();
+        }
+        bytes = 0;
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= old.size();
+            unfile(old);
+        }
+    }
+
+    private void unfile(Entry entry) {
+        for (TaskType type : entry.dependsOn) {
+            byType.get(type).remove(entry);
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            Entry entry = it.next();
+            bytes -= entry.size();
+            it.remove();
+            unfile(entry);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package ru.practicum.yandex.tracker.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Route templates such as "/epics/{id}/subtasks" are split into a trie once, at startup. A
+// request walks the raw path segment by segment with regionMatches and reads the id digits in
+// place, so matching allocates nothing. Literal segments win over {id}; at most one id per
+// template, which is all the API needs.
+final class Router implements HttpHandler {
+    static final int NO_ID = -1;
+
+    @FunctionalInterface
+    interface Route {
+        void handle(HttpExchange h, int id) throws IOException;
+    }
+
+    private static final class Node {
+        private String[] literals = new String[0];
+        private Node[] children = new Node[0];
+        private Node param;
+        private final Map<String, Endpoint> methods = new HashMap<>(4);
+
+        Node literal(String segment) {
+            for (int i = 0; i < literals.length; i++) {
+                if (literals[i].equals(segment)) {
+                    return children[i];
+                }
+            }
+            Node child = new Node();
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            literals[literals.length - 1] = segment;
+            children[children.length - 1] = child;
+            return child;
+        }
+
+        Node match(String path, int from, int to) {
+            int length = to - from;
+            for (int i = 0; i < literals.length; i++) {
+                String literal = literals[i];
+                if (literal.length() == length && path.regionMatches(from, literal, 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Endpoint {
+        final Route route;
+        final Metrics.RouteMetrics metrics;
+
+        Endpoint(Route route, Metrics.RouteMetrics metrics) {
+            this.route = route;
+            this.metrics = metrics;
+        }
+    }
+
+    // Counts response bytes as they leave the handler, after any compression.
+    private static final class CountingStream extends FilterOutputStream {
+        long count;
+
+        CountingStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private final Node root = new Node();
+    private final Metrics metrics;
+    private final Metrics.RouteMetrics unmatched;
+
+    Router(Metrics metrics) {
+        this.metrics = metrics;
+        this.unmatched = metrics.route("*", "unmatched");
+    }
+
+    Router add(String method, String template, Route route) {
+        Node node = root;
+        boolean hasId = false;
+        for (String segment : template.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if ("{id}".equals(segment)) {
+                if (hasId) {
+                    throw new IllegalArgumentException("Only one {id} per route: " + template);
+                }
+                hasId = true;
+                if (node.param == null) {
+                    node.param = new Node();
+                }
+                node = node.param;
+            } else {
+                node = node.literal(segment);
+            }
+        }
+        if (node.methods.containsKey(method)) {
+            throw new IllegalArgumentException("Duplicate route: " + method + " " + template);
+        }
+        node.methods.put(method, new Endpoint(route, metrics.route(method, template)));
+        return this;
+    }
+
+    @Override
+    public void handle(HttpExchange h) throws IOException {
+        String path = h.getRequestURI().getRawPath();
+        Node node = root;
+        int id = NO_ID;
+        int n = path.length();
+        int i = 0;
+        while (node != null) {
+            while (i < n && path.charAt(i) == '/') {
+                i++;
+            }
+            if (i == n) {
+                break;
+            }
+            int end = path.indexOf('/', i);
+            if (end < 0) {
+                end = n;
+            }
+            Node next = node.match(path, i, end);
+            if (next == null && node.param != null) {
+                int parsed = parseId(path, i, end);
+                if (parsed != NO_ID) {
+                    id = parsed;
+                    next = node.param;
+                }
+            }
+            node = next;
+            i = end;
+        }
+        Endpoint endpoint = node == null ? null : node.methods.get(h.getRequestMethod());
+        Metrics.RouteMetrics m = endpoint == null ? unmatched : endpoint.metrics;
+        CountingStream body = new CountingStream(h.getResponseBody());
+        h.setStreams(null, body);
+        long start = System.nanoTime();
+        m.begin();
+        try {
+            if (node == null || node.methods.isEmpty()) {
+                BaseHttpHandler.notFound(h);
+            } else if (endpoint == null) {
+                BaseHttpHandler.sendText(h, 405, "Method Not Allowed");
+            } else {
+                endpoint.route.handle(h, id);
+            }
+        } catch (Throwable ex) {
+            CompressionFilter.BodyTooLargeException tooLarge = CompressionFilter.bodyTooLarge(ex);
+            if (tooLarge != null) {
+                BaseHttpHandler.sendText(h, 413, tooLarge.getMessage());
+            } else {
+                BaseHttpHandler.serverError(h, ex);
+            }
+        } finally {
+            m.end(h.getResponseCode(), System.nanoTime() - start, body.count);
+        }
+    }
+
+    // Decimal digits only; anything else, or a value past Integer.MAX_VALUE, is not an id.
+    static int parseId(CharSequence path, int from, int to) {
+        if (from >= to || to - from > 10) {
+            return NO_ID;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = path.charAt(i);
+            if (c < '0' || c > '9') {
+                return NO_ID;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value > Integer.MAX_VALUE ? NO_ID : (int) value;
+    }
+}
@@ -0,0 +1,275 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Moves history bookkeeping off the read path. add() only publishes a view into a lock-free
+// ring (and drops it if the ring is full); one background thread applies views in batches,
+// collapsing repeated views of the same id, and republishes per-viewer snapshots that
+// getHistory() returns. Removals go through the same ring so they stay ordered after views.
+// A viewer's snapshot is dropped when the delegate discards that viewer's history.
+public class AsyncHistoryManager implements HistoryManager, AutoCloseable {
+    public static final int DEFAULT_RING_CAPACITY = 1 << 16;
+    public static final int DEFAULT_BATCH = 1024;
+    public static final long DEFAULT_PUBLISH_INTERVAL_MS = 5;
+
+    private static final String SHARED = "";
+
+    private final HistoryManager delegate;
+    private final MpscRing<Op> ring;
+    private final int batchSize;
+    private final long publishIntervalNanos;
+    private final Map<String, List<HistoryEntry>> published = new ConcurrentHashMap<>();
+    private volatile TaskResolver resolver = TaskResolver.UNBOUND;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread applier;
+    private volatile boolean running = true;
+    private volatile long appliedUpTo;
+
+    private static final class Op {
+        final String viewer;
+        final Task task;
+        final int removedId;
+
+        Op(String viewer, Task task, int removedId) {
+            this.viewer = viewer;
+            this.task = task;
+            this.removedId = removedId;
+        }
+    }
+
+    private static final class ViewKey {
+        final String viewer;
+        final int id;
+
+        ViewKey(String viewer, int id) {
+            this.viewer = viewer;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ViewKey)) return false;
+            ViewKey k = (ViewKey) o;
+            return id == k.id && viewer.equals(k.viewer);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(viewer, id);
+        }
+    }
+
+    public AsyncHistoryManager(HistoryManager delegate) {
+        this(delegate, DEFAULT_RING_CAPACITY, DEFAULT_BATCH, DEFAULT_PUBLISH_INTERVAL_MS);
+    }
+
+    public AsyncHistoryManager(HistoryManager delegate, int ringCapacity, int batchSize, long publishIntervalMs) {
+        this.delegate = delegate;
+        this.ring = new MpscRing<>(ringCapacity);
+        this.batchSize = batchSize;
+        this.publishIntervalNanos = TimeUnit.MILLISECONDS.toNanos(publishIntervalMs);
+        delegate.setViewerEvictionListener(published::remove);
+        this.applier = new Thread(this::applyLoop, "history-applier");
+        applier.setDaemon(true);
+        applier.start();
+    }
+
+    @Override
+    public void add(Task task) {
+        add(SHARED, task);
+    }
+
+    @Override
+    public void add(String viewer, Task task) {
+        if (task == null) return;
+        if (!ring.offer(new Op(viewer == null ? SHARED : viewer, task, 0))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    // Removals must not be lost, so unlike views they wait for room in the ring. Once the
+    // manager is closed nothing drains the ring, so they are applied by the caller instead.
+    @Override
+    public void remove(int id) {
+        Op op = new Op(null, null, id);
+        while (running) {
+            if (ring.offer(op)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+        delegate.remove(id);
+        republishRemoved(id, Collections.emptySet());
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return getHistory(SHARED);
+    }
+
+    @Override
+    public List<Task> getHistory(String viewer) {
+        return resolver.resolveAll(getEntries(viewer));
+    }
+
+    @Override
+    public List<HistoryEntry> getEntries() {
+        return getEntries(SHARED);
+    }
+
+    @Override
+    public List<HistoryEntry> getEntries(String viewer) {
+        return published.getOrDefault(viewer == null ? SHARED : viewer, Collections.emptyList());
+    }
+
+    @Override
+    public void bind(TaskResolver resolver) {
+        this.resolver = resolver;
+        delegate.bind(resolver);
+    }
+
+    // Pages come from the delegate, i.e. the state as of the last applied batch.
+    @Override
+    public HistoryPage getHistoryPage(HistoryOrder order, int limit, String cursor) {
+        return delegate.getHistoryPage(order, limit, cursor);
+    }
+
+    @Override
+    public HistoryPage getHistoryPage(String viewer, HistoryOrder order, int limit, String cursor) {
+        return delegate.getHistoryPage(viewer == null ? SHARED : viewer, order, limit, cursor);
+    }
+
+    @Override
+    public ViewFrequencySketch getViewSketch() {
+        return delegate.getViewSketch();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return delegate.getEvictionCount();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Blocks until everything published before the call is applied and visible.
+    public void flush() {
+        long target = ring.produced();
+        while (appliedUpTo < target && applier.isAlive()) {
+            LockSupport.parkNanos(100_000);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(applier);
+        try {
+            applier.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void applyLoop() {
+        List<Op> batch = new ArrayList<>(batchSize);
+        while (running || ring.consumed() < ring.produced()) {
+            Op op;
+            while (batch.size() < batchSize && (op = ring.poll()) != null) {
+                batch.add(op);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(publishIntervalNanos);
+                continue;
+            }
+            apply(batch);
+            batch.clear();
+            appliedUpTo = ring.consumed();
+        }
+    }
+
+    private void apply(List<Op> batch) {
+        Map<ViewKey, Task> views = new LinkedHashMap<>();
+        Set<String> touched = new HashSet<>();
+        List<Integer> removed = new ArrayList<>();
+        ViewFrequencySketch sketch = delegate.getViewSketch();
+        for (Op op : batch) {
+            if (op.task == null) {
+                applyViews(views);
+                delegate.remove(op.removedId);
+                removed.add(op.removedId);
+                continue;
+            }
+            ViewKey key = new ViewKey(op.viewer, op.task.getId());
+            if (views.remove(key) != null && sketch != null) {
+                // A collapsed view still counts towards how often the id is viewed.
+                sketch.record(key.id, TaskType.of(op.task), 1);
+            }
+            views.put(key, op.task);
+            touched.add(op.viewer);
+        }
+        applyViews(views);
+        for (String viewer : touched) {
+            publish(viewer);
+        }
+        for (int id : removed) {
+            republishRemoved(id, touched);
+        }
+    }
+
+    // Only viewers whose published history still lists the id need a new snapshot.
+    private void republishRemoved(int id, Set<String> done) {
+        for (Map.Entry<String, List<HistoryEntry>> e : published.entrySet()) {
+            if (!done.contains(e.getKey()) && contains(e.getValue(), id)) {
+                publish(e.getKey());
+            }
+        }
+    }
+
+    // An empty history has nothing to publish; that is also how a viewer evicted by the
+    // delegate earlier in the batch reads.
+    private void publish(String viewer) {
+        List<HistoryEntry> entries = delegate.getEntries(viewer);
+        if (entries.isEmpty()) {
+            published.remove(viewer);
+        } else {
+            published.put(viewer, Collections.unmodifiableList(entries));
+        }
+    }
+
+    private static boolean contains(List<HistoryEntry> entries, int id) {
+        for (HistoryEntry e : entries) {
+            if (e.getId() == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void applyViews(Map<ViewKey, Task> views) {
+        for (Map.Entry<ViewKey, Task> e : views.entrySet()) {
+            delegate.add(e.getKey().viewer, e.getValue());
+        }
+        views.clear();
+    }
+}
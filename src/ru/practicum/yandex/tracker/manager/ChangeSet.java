@@ -0,0 +1,37 @@
+package ru.practicum.yandex.tracker.manager;
+
+import java.util.List;
+
+// Net changes after a sequence number, one entry per entity in the order of its last change.
+// Pass the high-water mark as the next `since`. A reset means the requested point is no longer
+// covered by the event log (or comes from an earlier process), so the client has to refetch
+// everything and then continue from the high-water mark.
+public final class ChangeSet {
+    private final List<TaskEvent> changes;
+    private final long highWaterMark;
+    private final boolean more;
+    private final boolean reset;
+
+    ChangeSet(List<TaskEvent> changes, long highWaterMark, boolean more, boolean reset) {
+        this.changes = changes;
+        this.highWaterMark = highWaterMark;
+        this.more = more;
+        this.reset = reset;
+    }
+
+    public List<TaskEvent> getChanges() {
+        return changes;
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public boolean hasMore() {
+        return more;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+}
@@ -0,0 +1,8 @@
+package ru.practicum.yandex.tracker.manager;
+
+public enum ChangeType {
+    CREATED,
+    UPDATED,
+    DELETED,
+    EPIC_RECALCULATED
+}
@@ -0,0 +1,322 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Status;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+// Append-only spill file for evicted entities. The in-memory index keeps just enough per
+// entry (type and time window) to answer epic aggregates and overlap checks without reading
+// the file. Records of removed entities stay in the file as dead bytes until compaction
+// rewrites the live ones into a fresh file.
+class ColdStore implements Closeable {
+    static final long MIN_COMPACT_BYTES = 64 * 1024;
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    private static final Comparator<Entry> BY_START =
+            Comparator.<Entry>comparingLong(e -> e.startEpochSecond).thenComparingInt(e -> e.id);
+
+    private final File file;
+    private RandomAccessFile raf;
+    private final Map<Integer, Entry> index = new HashMap<>();
+    // Entries with a complete time window, by start.
+    private final NavigableSet<Entry> windows = new TreeSet<>(BY_START);
+    private final LinkedHashMap<Integer, Task> cache;
+    private long fileLength;
+    private long liveBytes;
+
+    static final class Entry {
+        final int id;
+        final int length;
+        final TaskType type;
+        final long durationMinutes;
+        final long startEpochSecond;
+        // Moved by compaction, under the store's monitor.
+        long offset;
+        // Set once the entity leaves the store, for snapshot readers that still refer to it.
+        volatile Task retired;
+
+        Entry(int id, long offset, int length, TaskType type, long durationMinutes, long startEpochSecond) {
+            this.id = id;
+            this.offset = offset;
+            this.length = length;
+            this.type = type;
+            this.durationMinutes = durationMinutes;
+            this.startEpochSecond = startEpochSecond;
+        }
+
+        boolean hasWindow() {
+            return startEpochSecond != NO_VALUE && durationMinutes != NO_VALUE;
+        }
+
+        long endEpochSecond() {
+            return startEpochSecond + durationMinutes * 60;
+        }
+
+        Duration duration() {
+            return durationMinutes == NO_VALUE ? null : Duration.ofMinutes(durationMinutes);
+        }
+
+        LocalDateTime start() {
+            return startEpochSecond == NO_VALUE
+                    ? null : LocalDateTime.ofEpochSecond(startEpochSecond, 0, ZoneOffset.UTC);
+        }
+
+        LocalDateTime end() {
+            LocalDateTime start = start();
+            return start == null || durationMinutes == NO_VALUE ? null : start.plusMinutes(durationMinutes);
+        }
+    }
+
+    ColdStore(File file, int cacheSize) {
+        this.file = file;
+        try {
+            this.raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to open cold store: " + file, e);
+        }
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Task> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    synchronized Entry write(Task task) {
+        byte[] bytes = encode(task);
+        try {
+            long offset = fileLength;
+            raf.seek(offset);
+            raf.write(bytes);
+            fileLength += bytes.length;
+            Entry entry = new Entry(task.getId(), offset, bytes.length, TaskType.of(task),
+                    task.getDuration() == null ? NO_VALUE : task.getDuration().toMinutes(),
+                    task.getStartTime() == null ? NO_VALUE : task.getStartTime().toEpochSecond(ZoneOffset.UTC));
+            index.put(task.getId(), entry);
+            liveBytes += entry.length;
+            if (entry.hasWindow()) {
+                windows.add(entry);
+            }
+            return entry;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to write cold store: " + file, e);
+        }
+    }
+
+    synchronized Entry entry(int id) {
+        return index.get(id);
+    }
+
+    synchronized boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    synchronized List<Integer> ids(TaskType type) {
+        List<Integer> ids = new ArrayList<>();
+        for (Map.Entry<Integer, Entry> e : index.entrySet()) {
+            if (e.getValue().type == type) {
+                ids.add(e.getKey());
+            }
+        }
+        return ids;
+    }
+
+    synchronized Task load(int id, TaskType type) {
+        Entry entry = index.get(id);
+        if (entry == null || entry.type != type) {
+            return null;
+        }
+        return load(id, entry);
+    }
+
+    // Goes through the cache only while `entry` is still the live record for the id; older
+    // records were retired in memory when they left the store, since compaction drops them.
+    synchronized Task load(int id, Entry entry) {
+        if (index.get(id) != entry) {
+            Task retired = entry.retired;
+            return retired != null ? retired : read(entry);
+        }
+        Task cached = cache.get(id);
+        if (cached == null) {
+            cached = read(entry);
+            cache.put(id, cached);
+        }
+        return cached;
+    }
+
+    // Bulk reads bypass the cache so that a full listing does not flush the hot entries.
+    synchronized List<Task> loadAll(TaskType type) {
+        List<Task> out = new ArrayList<>();
+        for (Entry entry : index.values()) {
+            if (entry.type == type) {
+                out.add(read(entry));
+            }
+        }
+        return out;
+    }
+
+    synchronized Entry remove(int id) {
+        cache.remove(id);
+        Entry entry = index.remove(id);
+        if (entry != null) {
+            entry.retired = read(entry);
+            windows.remove(entry);
+            liveBytes -= entry.length;
+        }
+        return entry;
+    }
+
+    // Whether any stored time window other than the entity's own intersects [start, end).
+    // Windows in the store do not overlap each other, so the one starting last before `end`
+    // also ends last and is the only one to check.
+    synchronized boolean overlaps(int id, LocalDateTime start, LocalDateTime end) {
+        long from = start.toEpochSecond(ZoneOffset.UTC);
+        long to = end.toEpochSecond(ZoneOffset.UTC);
+        Entry probe = new Entry(Integer.MIN_VALUE, 0, 0, null, 0, to);
+        for (Entry e : windows.headSet(probe, false).descendingSet()) {
+            if (e.id != id) {
+                return e.endEpochSecond() > from;
+            }
+        }
+        return false;
+    }
+
+    synchronized boolean needsCompaction() {
+        return fileLength - liveBytes > Math.max(MIN_COMPACT_BYTES, liveBytes);
+    }
+
+    // Copies the live records into a fresh file and swaps it in; entries keep their identity
+    // and only their offsets move, so lazy loaders holding them stay valid.
+    synchronized void compact() {
+        File tmp = new File(file.getPath() + ".tmp");
+        Map<Entry, Long> moved = new HashMap<>();
+        long offset = 0;
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            byte[] bytes = new byte[0];
+            for (Entry entry : index.values()) {
+                if (bytes.length < entry.length) {
+                    bytes = new byte[entry.length];
+                }
+                raf.seek(entry.offset);
+                raf.readFully(bytes, 0, entry.length);
+                out.write(bytes, 0, entry.length);
+                moved.put(entry, offset);
+                offset += entry.length;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to compact cold store: " + file, e);
+        }
+        try {
+            raf.close();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            raf = new RandomAccessFile(file, "rw");
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to replace cold store: " + file, e);
+        }
+        for (Map.Entry<Entry, Long> m : moved.entrySet()) {
+            m.getKey().offset = m.getValue();
+        }
+        fileLength = offset;
+        liveBytes = offset;
+    }
+
+    synchronized Task read(Entry entry) {
+        byte[] bytes = new byte[entry.length];
+        try {
+            raf.seek(entry.offset);
+            raf.readFully(bytes);
+            return decode(bytes);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to read cold store: " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        cache.clear();
+        index.clear();
+        windows.clear();
+        raf.close();
+    }
+
+    private static byte[] encode(Task task) {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(buf)) {
+            out.writeByte(TaskType.of(task).ordinal());
+            out.writeInt(task.getId());
+            writeString(out, task.getTitle() == null ? "" : task.getTitle());
+            writeString(out, task.getDescription() == null ? "" : task.getDescription());
+            out.writeByte(task.getStatus().ordinal());
+            out.writeInt(task instanceof Subtask ? ((Subtask) task).getEpicId() : 0);
+            out.writeLong(task.getDuration() == null ? NO_VALUE : task.getDuration().toMinutes());
+            writeString(out, task.getStartTime() == null ? "" : task.getStartTime().toString());
+            out.writeLong(task.getVersion());
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to encode task " + task.getId(), e);
+        }
+        return buf.toByteArray();
+    }
+
+    // Length-prefixed UTF-8; writeUTF would cap a string at 64 KiB of encoded bytes.
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Task decode(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            TaskType type = TaskType.values()[in.readByte()];
+            int id = in.readInt();
+            String title = readString(in);
+            String desc = readString(in);
+            Status status = Status.values()[in.readByte()];
+            int epicId = in.readInt();
+            long minutes = in.readLong();
+            String start = readString(in);
+            long version = in.readLong();
+
+            Task t = type == TaskType.SUBTASK ? new Subtask(id, title, desc, epicId) : new Task(id, title, desc);
+            t.setStatus(status);
+            t.setDuration(minutes == NO_VALUE ? null : Duration.ofMinutes(minutes));
+            t.setStartTime(start.isEmpty() ? null : LocalDateTime.parse(start));
+            t.setVersion(version);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.practicum.yandex.tracker.manager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+class EventLog {
+    private final TaskEvent[] ring;
+    private long lastSequence;
+
+    EventLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.ring = new TaskEvent[capacity];
+    }
+
+    synchronized long nextSequence() {
+        return lastSequence + 1;
+    }
+
+    synchronized void append(TaskEvent event) {
+        lastSequence = event.getSequence();
+        ring[(int) (lastSequence % ring.length)] = event;
+    }
+
+    synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    synchronized List<TaskEvent> since(long sequence, int limit) {
+        long oldest = Math.max(1, lastSequence - ring.length + 1);
+        long from = Math.max(sequence + 1, oldest);
+        if (from > lastSequence || limit <= 0) {
+            return Collections.emptyList();
+        }
+        long to = Math.min(lastSequence, from + limit - 1);
+        List<TaskEvent> out = new ArrayList<>((int) (to - from + 1));
+        for (long s = from; s <= to; s++) {
+            out.add(ring[(int) (s % ring.length)]);
+        }
+        return out;
+    }
+}
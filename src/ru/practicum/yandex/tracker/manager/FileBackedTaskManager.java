@@ -12,88 +12,157 @@ import java.util.ArrayList;
 import java.util.List;
 import java.nio.charset.StandardCharsets;
 
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
     private final File file;
-    private static final String HEADER = "id,type,title,status,description,epic,duration,start";
+    private final HistoryLog historyLog;
+    private static final String HEADER = "id,type,title,status,description,epic,duration,start,version";
 
     public FileBackedTaskManager(File file) {
         this.file = file;
+        this.historyLog = new HistoryLog(historyFileOf(file));
+        addListener(event -> {
+            if (event.getChange() == ChangeType.DELETED) {
+                historyLog.removed(event.getEntityId());
+            }
+        });
+    }
+
+    static File historyFileOf(File file) {
+        return new File(file.getPath() + ".history");
+    }
+
+    // History
+    // The log mirrors the order views reach the history manager: both happen under the log's
+    // monitor, which only guards a buffered append.
+    @Override
+    void recordView(String viewer, Task task) {
+        synchronized (historyLog) {
+            super.recordView(viewer, task);
+            historyLog.viewed(task.getId());
+        }
+        if (lookup(task.getId()) == null) {
+            // Lost a race with a delete whose removal may already be logged.
+            historyLog.removed(task.getId());
+        }
+        synchronized (historyLog) {
+            if (historyLog.needsCompaction(getHistoryManager().size())) {
+                compactHistory();
+            }
+        }
+    }
+
+    private void compactHistory() {
+        synchronized (historyLog) {
+            List<Integer> ids = new ArrayList<>();
+            for (HistoryEntry e : getHistoryManager().getEntries()) {
+                ids.add(e.getId());
+            }
+            historyLog.compact(ids);
+        }
+    }
+
+    // Writes out buffered history records, which otherwise reach the file shortly after.
+    public void flushHistory() {
+        historyLog.flush();
+    }
+
+    @Override
+    public void close() {
+        historyLog.close();
+    }
+
+    private void restoreHistory(List<Integer> viewed) {
+        for (int id : viewed) {
+            Task t = lookup(id);
+            if (t != null) {
+                super.recordView(null, t);
+            }
+        }
+        compactHistory();
+    }
+
+    private Task lookup(int id) {
+        Task t = peekTask(id);
+        if (t == null) {
+            t = peekSubtask(id);
+        }
+        return t == null ? peekEpic(id) : t;
     }
 
     // Task
     @Override
-    public int createTask(Task task) {
+    public synchronized int createTask(Task task) {
         int id = super.createTask(task);
         save();
         return id;
     }
 
     @Override
-    public void updateTask(Task task) {
+    public synchronized void updateTask(Task task) {
         super.updateTask(task);
         save();
     }
 
     @Override
-    public void deleteTaskById(int id) {
+    public synchronized void deleteTaskById(int id) {
         super.deleteTaskById(id);
         save();
     }
 
     @Override
-    public void deleteAllTasks() {
+    public synchronized void deleteAllTasks() {
         super.deleteAllTasks();
         save();
     }
 
     // Subtask
     @Override
-    public int createSubtask(Subtask subtask) {
+    public synchronized int createSubtask(Subtask subtask) {
         int id = super.createSubtask(subtask);
         save();
         return id;
     }
 
     @Override
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
         super.updateSubtask(subtask);
         save();
     }
 
     @Override
-    public void deleteSubtaskById(int id) {
+    public synchronized void deleteSubtaskById(int id) {
         super.deleteSubtaskById(id);
         save();
     }
 
     @Override
-    public void deleteAllSubtasks() {
+    public synchronized void deleteAllSubtasks() {
         super.deleteAllSubtasks();
         save();
     }
 
     // Epic
     @Override
-    public int createEpic(Epic epic) {
+    public synchronized int createEpic(Epic epic) {
         int id = super.createEpic(epic);
         save();
         return id;
     }
 
     @Override
-    public void updateEpic(Epic epic) {
+    public synchronized void updateEpic(Epic epic) {
         super.updateEpic(epic);
         save();
     }
 
     @Override
-    public void deleteEpicById(int id) {
+    public synchronized void deleteEpicById(int id) {
         super.deleteEpicById(id);
         save();
     }
 
     @Override
-    public void deleteAllEpics() {
+    public synchronized void deleteAllEpics() {
         super.deleteAllEpics();
         save();
     }
@@ -121,7 +190,8 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         String dur = task.getDuration() == null ? "" : String.valueOf(task.getDuration().toMinutes());
         String start = task.getStartTime() == null ? "" : task.getStartTime().toString();
         sb.append(dur).append(',')
-                .append(start);
+                .append(start).append(',')
+                .append(task.getVersion());
         return sb.toString();
     }
 
@@ -141,6 +211,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
 
             Duration dur = (f.length > 6 && !f[6].isEmpty()) ? Duration.ofMinutes(Long.parseLong(f[6].trim())) : null;
             LocalDateTime start = (f.length > 7 && !f[7].isEmpty()) ? LocalDateTime.parse(f[7].trim()) : null;
+            long version = (f.length > 8 && !f[8].isEmpty()) ? Long.parseLong(f[8].trim()) : 1;
 
             switch (type) {
                 case TASK -> {
@@ -148,6 +219,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
                     t.setStatus(status);
                     t.setDuration(dur);
                     t.setStartTime(start);
+                    t.setVersion(version);
                     return t;
                 }
                 case SUBTASK -> {
@@ -158,11 +230,13 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
                     s.setStatus(status);
                     s.setDuration(dur);
                     s.setStartTime(start);
+                    s.setVersion(version);
                     return s;
                 }
                 case EPIC -> {
                     Epic e = new Epic(id, title, desc);
                     e.setStatus(status);
+                    e.setVersion(version);
                     return e;
                 }
             }
@@ -172,7 +246,9 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
         }
     }
 
+    // A change to the board also persists the views that led up to it.
     private void save() {
+        historyLog.flush();
         try (BufferedWriter bw = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
             bw.write(HEADER);
             bw.newLine();
@@ -197,6 +273,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     }
 
     public static FileBackedTaskManager loadFromFile(File file) {
+        List<Integer> viewed = HistoryLog.replay(historyFileOf(file));
         FileBackedTaskManager m = new FileBackedTaskManager(file);
         List<String> lines;
 
@@ -237,6 +314,7 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
             }
         }
         m.setNextIdAfterLoad(maxId + 1);
+        m.restoreHistory(viewed);
         return m;
     }
 }
@@ -0,0 +1,43 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+// What history keeps per view; the entity itself is looked up when history is read. A history
+// that is not bound to a task manager has nothing to look it up in, so it also keeps a copy of
+// the entity as it was viewed.
+public final class HistoryEntry {
+    private final int id;
+    private final TaskType type;
+    private final long viewedAt;
+    private final Task snapshot;
+
+    public HistoryEntry(int id, TaskType type, long viewedAt) {
+        this(id, type, viewedAt, null);
+    }
+
+    HistoryEntry(int id, TaskType type, long viewedAt, Task snapshot) {
+        this.id = id;
+        this.type = type;
+        this.viewedAt = viewedAt;
+        this.snapshot = snapshot;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public TaskType getType() {
+        return type;
+    }
+
+    // Epoch milliseconds of the latest view.
+    public long getViewedAt() {
+        return viewedAt;
+    }
+
+    // The entity as viewed, or null when history is bound and resolves entries instead.
+    Task getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,182 @@
+package ru.practicum.yandex.tracker.manager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Append-only record of history changes: one int per record, a positive id for a view and a
+// negated id for a removal. Once the log outgrows the live history it is compacted into the
+// current ordered list of ids, so its size stays proportional to the history itself.
+//
+// Records are buffered and reach the file every FLUSH_RECORDS records, FLUSH_INTERVAL_MS after
+// being written, or on flush(); a crash loses at most that much recent history.
+class HistoryLog {
+    static final int MIN_COMPACT_RECORDS = 1024;
+    static final int FLUSH_RECORDS = 256;
+    static final long FLUSH_INTERVAL_MS = 200;
+
+    // One thread flushes every open log; a log that is no longer referenced drops out.
+    private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread th = new Thread(r, "history-log-flusher");
+        th.setDaemon(true);
+        return th;
+    });
+
+    private final File file;
+    private final ScheduledFuture<?> flushing;
+    private DataOutputStream out;
+    private long records;
+    private int unflushed;
+
+    private static final class Flusher implements Runnable {
+        final WeakReference<HistoryLog> log;
+        volatile ScheduledFuture<?> future;
+
+        Flusher(HistoryLog log) {
+            this.log = new WeakReference<>(log);
+        }
+
+        @Override
+        public void run() {
+            HistoryLog l = log.get();
+            if (l == null) {
+                future.cancel(false);
+                return;
+            }
+            try {
+                l.flush();
+            } catch (ManagerSaveException retryNextTime) {
+                // The next write or flush reports it to a caller.
+            }
+        }
+    }
+
+    // Starts a fresh, empty log.
+    HistoryLog(File file) {
+        this.file = file;
+        this.out = open(false);
+        Flusher flusher = new Flusher(this);
+        this.flushing = FLUSHER.scheduleWithFixedDelay(flusher, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        flusher.future = flushing;
+    }
+
+    synchronized void viewed(int id) {
+        write(id);
+    }
+
+    synchronized void removed(int id) {
+        write(-id);
+    }
+
+    synchronized void flush() {
+        if (unflushed == 0) {
+            return;
+        }
+        try {
+            out.flush();
+            unflushed = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to flush history log: " + file, e);
+        }
+    }
+
+    synchronized void close() {
+        flushing.cancel(false);
+        try {
+            out.close();
+            unflushed = 0;
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to close history log: " + file, e);
+        }
+    }
+
+    synchronized boolean needsCompaction(int liveSize) {
+        return records > Math.max(MIN_COMPACT_RECORDS, 2L * liveSize);
+    }
+
+    // The caller must take `ids` while holding this log's monitor, so that no record appended
+    // after the snapshot is lost by the rewrite.
+    synchronized void compact(List<Integer> ids) {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            for (int id : ids) {
+                tmpOut.writeInt(id);
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to compact history log: " + file, e);
+        }
+        try {
+            out.close();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to replace history log: " + file, e);
+        }
+        out = open(true);
+        records = ids.size();
+        unflushed = 0;
+    }
+
+    // Replays the log in one pass; the result is the history, oldest view first.
+    static List<Integer> replay(File file) {
+        LinkedHashSet<Integer> order = new LinkedHashSet<>();
+        if (!file.exists()) {
+            return new ArrayList<>();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int record;
+                try {
+                    record = in.readInt();
+                } catch (EOFException end) {
+                    break;
+                }
+                if (record > 0) {
+                    order.remove(record);
+                    order.add(record);
+                } else {
+                    order.remove(-record);
+                }
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to read history log: " + file, e);
+        }
+        return new ArrayList<>(order);
+    }
+
+    private void write(int record) {
+        try {
+            out.writeInt(record);
+            records++;
+            if (++unflushed >= FLUSH_RECORDS) {
+                out.flush();
+                unflushed = 0;
+            }
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to append to history log: " + file, e);
+        }
+    }
+
+    private DataOutputStream open(boolean append) {
+        try {
+            return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+        } catch (IOException e) {
+            throw new ManagerSaveException("Failed to open history log: " + file, e);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package ru.practicum.yandex.tracker.manager;
 
 import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface HistoryManager {
 
@@ -10,4 +14,50 @@ public interface HistoryManager {
     void remove(int id);
 
     List<Task> getHistory();
+
+    List<HistoryEntry> getEntries();
+
+    // A manager without partitions keeps one history shared by every viewer.
+    default void add(String viewer, Task task) {
+        add(task);
+    }
+
+    default List<Task> getHistory(String viewer) {
+        return getHistory();
+    }
+
+    default List<HistoryEntry> getEntries(String viewer) {
+        return getEntries();
+    }
+
+    // Lets the owning task manager turn entries back into its current entities.
+    default void bind(TaskResolver resolver) {
+    }
+
+    default HistoryPage getHistoryPage(HistoryOrder order, int limit, String cursor) {
+        return HistoryPage.slice(getHistory(), order, limit, cursor);
+    }
+
+    default HistoryPage getHistoryPage(String viewer, HistoryOrder order, int limit, String cursor) {
+        return getHistoryPage(order, limit, cursor);
+    }
+
+    // Called with the viewer whose history was discarded to make room for others. A manager
+    // without partitions never discards one.
+    default void setViewerEvictionListener(Consumer<String> listener) {
+    }
+
+    // Recent view frequencies, or null when this manager does not track them.
+    default ViewFrequencySketch getViewSketch() {
+        return null;
+    }
+
+    default List<ViewCount> getTopViewed(int limit, TaskType type) {
+        ViewFrequencySketch sketch = getViewSketch();
+        return sketch == null ? Collections.emptyList() : sketch.top(limit, type);
+    }
+
+    int size();
+
+    long getEvictionCount();
 }
@@ -0,0 +1,6 @@
+package ru.practicum.yandex.tracker.manager;
+
+public enum HistoryOrder {
+    NEWEST_FIRST,
+    OLDEST_FIRST
+}
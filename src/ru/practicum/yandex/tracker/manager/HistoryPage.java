@@ -0,0 +1,86 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// One page of a viewer's history. The cursor names the last returned entry as "id.stamp",
+// where the stamp tells whether that entry has been viewed again since the page was built.
+public final class HistoryPage {
+    private final List<Task> items;
+    private final String nextCursor;
+
+    public HistoryPage(List<Task> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Task> getItems() {
+        return items;
+    }
+
+    // Null once the page reaches the end of the history.
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    static String cursor(int id, long stamp) {
+        return id + "." + stamp;
+    }
+
+    static int cursorId(String cursor) {
+        return (int) parse(cursor)[0];
+    }
+
+    static long cursorStamp(String cursor) {
+        return parse(cursor)[1];
+    }
+
+    private static long[] parse(String cursor) {
+        int dot = cursor.indexOf('.');
+        try {
+            if (dot > 0) {
+                return new long[]{Integer.parseInt(cursor.substring(0, dot)), Long.parseLong(cursor.substring(dot + 1))};
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("Malformed history cursor: " + cursor);
+    }
+
+    static void checkLimit(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+    }
+
+    // Fallback for managers that only expose a full oldest-first list; the cursor is located
+    // by id, so an entry that has since been dropped ends the paging.
+    static HistoryPage slice(List<Task> history, HistoryOrder order, int limit, String cursor) {
+        checkLimit(limit);
+        boolean newest = order == HistoryOrder.NEWEST_FIRST;
+        int step = newest ? -1 : 1;
+        int pos = newest ? history.size() - 1 : 0;
+        if (cursor != null) {
+            int id = cursorId(cursor);
+            pos = -1;
+            for (int i = 0; i < history.size(); i++) {
+                if (history.get(i).getId() == id) {
+                    pos = i + step;
+                    break;
+                }
+            }
+            if (pos < 0 && !newest) {
+                pos = history.size();
+            }
+        }
+        List<Task> items = new ArrayList<>();
+        while (pos >= 0 && pos < history.size() && items.size() < limit) {
+            items.add(history.get(pos));
+            pos += step;
+        }
+        boolean more = pos >= 0 && pos < history.size() && !items.isEmpty();
+        return new HistoryPage(items, more ? cursor(items.get(items.size() - 1).getId(), 0) : null);
+    }
+}
@@ -1,6 +1,7 @@
 package ru.practicum.yandex.tracker.manager;
 
 import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -8,58 +9,194 @@ import java.util.List;
 import java.util.Map;
 
 public class InMemoryHistoryManager implements HistoryManager {
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
 
     private final Map<Integer, Node> index = new HashMap<>();
+    private final int capacity;
+    private final ViewFrequencySketch sketch;
+    private volatile TaskResolver resolver = TaskResolver.UNBOUND;
     private Node head;
     private Node tail;
+    private long evictions;
+    private long stamps;
 
+    public InMemoryHistoryManager() {
+        this(UNBOUNDED);
+    }
+
+    public InMemoryHistoryManager(int capacity) {
+        this(capacity, new ViewFrequencySketch());
+    }
+
+    // A null sketch turns view counting off, e.g. for partitions that share an outer sketch.
+    public InMemoryHistoryManager(int capacity, ViewFrequencySketch sketch) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.sketch = sketch;
+    }
+
+    // The sketch is lock-free and is updated outside the history monitor.
     @Override
     public void add(Task task) {
         if (task == null) return;
+        if (sketch != null) {
+            sketch.record(task.getId(), TaskType.of(task), 1);
+        }
+        link(task);
+    }
 
+    private synchronized void link(Task task) {
         Node old = index.remove(task.getId());
         if (old != null) {
             removeNode(old);
         }
 
-        Task snapshot = new Task(task.getId(), task.getTitle(), task.getDescription());
-        snapshot.setStatus(task.getStatus());
+        Node node = linkLast(task.getId(), TaskType.of(task), System.currentTimeMillis());
+        if (resolver == TaskResolver.UNBOUND) {
+            node.snapshot = InMemoryTaskManager.frozenCopy(task);
+        }
+        index.put(node.id, node);
 
-        Node node = linkLast(snapshot);
-        index.put(snapshot.getId(), node);
+        if (index.size() > capacity) {
+            Node eldest = head;
+            index.remove(eldest.id);
+            removeNode(eldest);
+            evictions++;
+        }
     }
 
     @Override
     public void remove(int id) {
+        if (sketch != null) {
+            sketch.forget(id);
+        }
+        unlink(id);
+    }
+
+    private synchronized void unlink(int id) {
         Node node = index.remove(id);
         if (node != null) {
             removeNode(node);
         }
     }
 
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    // Once bound, entries resolve to current entities and the viewed copies are dropped.
+    @Override
+    public synchronized void bind(TaskResolver resolver) {
+        this.resolver = resolver;
+        if (resolver != TaskResolver.UNBOUND) {
+            for (Node cur = head; cur != null; cur = cur.next) {
+                cur.snapshot = null;
+            }
+        }
+    }
+
+    @Override
+    public ViewFrequencySketch getViewSketch() {
+        return sketch;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Entities are resolved outside the lock, so a slow lookup does not hold up new views.
     @Override
     public List<Task> getHistory() {
-        List<Task> list = new ArrayList<>();
+        return resolver.resolveAll(getEntries());
+    }
+
+    @Override
+    public synchronized List<HistoryEntry> getEntries() {
+        List<HistoryEntry> list = new ArrayList<>(index.size());
         Node cur = head;
         while (cur != null) {
-            list.add(cur.task);
+            list.add(new HistoryEntry(cur.id, cur.type, cur.viewedAt, cur.snapshot));
             cur = cur.next;
         }
         return list;
     }
 
+    // Walks only the requested page; a cursor whose entry is still in place resumes in O(1).
+    // Like getHistory, entities are resolved outside the lock; if some no longer resolve, the
+    // walk continues from where it stopped until the page is full.
+    @Override
+    public HistoryPage getHistoryPage(HistoryOrder order, int limit, String cursor) {
+        HistoryPage.checkLimit(limit);
+        List<Task> items = new ArrayList<>();
+        List<HistoryEntry> batch = new ArrayList<>();
+        String next = cursor;
+        do {
+            batch.clear();
+            next = collectPage(order, limit - items.size(), next, batch);
+            items.addAll(resolver.resolveAll(batch));
+        } while (next != null && items.size() < limit);
+        return new HistoryPage(items, next);
+    }
+
+    // Copies up to `limit` entries into `out` and returns the cursor after the last of them,
+    // or null at the end of the history.
+    synchronized String collectPage(HistoryOrder order, int limit, String cursor, List<HistoryEntry> out) {
+        boolean newest = order == HistoryOrder.NEWEST_FIRST;
+        Node cur = cursor == null ? (newest ? tail : head) : resume(cursor, newest);
+        Node last = null;
+        while (cur != null && out.size() < limit) {
+            out.add(new HistoryEntry(cur.id, cur.type, cur.viewedAt, cur.snapshot));
+            last = cur;
+            cur = newest ? cur.prev : cur.next;
+        }
+        return cur == null || last == null ? null : HistoryPage.cursor(last.id, last.stamp);
+    }
+
+    private Node resume(String cursor, boolean newest) {
+        long stamp = HistoryPage.cursorStamp(cursor);
+        Node at = index.get(HistoryPage.cursorId(cursor));
+        if (at != null && at.stamp == stamp) {
+            return newest ? at.prev : at.next;
+        }
+        // The entry was viewed again or dropped. Stamps grow from head to tail, so find the
+        // newest entry older than the cursor, walking only over entries added after it.
+        Node older = tail;
+        while (older != null && older.stamp > stamp) {
+            older = older.prev;
+        }
+        if (newest) {
+            return older;
+        }
+        return older == null ? head : older.next;
+    }
+
     private static class Node {
-        Task task;
+        final int id;
+        final TaskType type;
+        final long viewedAt;
+        Task snapshot;
+        long stamp;
         Node prev;
         Node next;
 
-        Node(Task task) {
-            this.task = task;
+        Node(int id, TaskType type, long viewedAt) {
+            this.id = id;
+            this.type = type;
+            this.viewedAt = viewedAt;
         }
     }
 
-    private Node linkLast(Task t) {
-        Node node = new Node(t);
+    private Node linkLast(int id, TaskType type, long viewedAt) {
+        Node node = new Node(id, type, viewedAt);
+        node.stamp = ++stamps;
         if (tail == null) {
             head = node;
             tail = node;
@@ -4,18 +4,23 @@ import ru.practicum.yandex.tracker.model.Epic;
 import ru.practicum.yandex.tracker.model.Status;
 import ru.practicum.yandex.tracker.model.Subtask;
 import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class InMemoryTaskManager implements TaskManager {
+    private static final Logger LOG = Logger.getLogger(InMemoryTaskManager.class.getName());
 
-    private final Map<Integer, Task> tasks = new HashMap<>();
-    private final Map<Integer, Subtask> subtasks = new HashMap<>();
-    private final Map<Integer, Epic> epics = new HashMap<>();
-    private final HistoryManager historyManager = Managers.getDefaultHistory();
-    private final NavigableSet<Task> prioritized = new TreeSet<>((a, b) -> {
+    public static final int DEFAULT_EVENT_CAPACITY = 4096;
+
+    static final Comparator<Task> PRIORITY_ORDER = (a, b) -> {
         LocalDateTime sa = a.getStartTime();
         LocalDateTime sb = b.getStartTime();
         if (sa == null && sb == null) return Integer.compare(a.getId(), b.getId());
@@ -23,56 +28,208 @@ public class InMemoryTaskManager implements TaskManager {
         if (sb == null) return -1;
         int cmp = sa.compareTo(sb);
         return (cmp != 0) ? cmp : Integer.compare(a.getId(), b.getId());
-    });
+    };
+
+    private final Map<Integer, Task> tasks = new HashMap<>();
+    private final Map<Integer, Subtask> subtasks = new HashMap<>();
+    private final Map<Integer, Epic> epics = new HashMap<>();
+    private final HistoryManager historyManager;
+    private final NavigableSet<Task> prioritized = new TreeSet<>(PRIORITY_ORDER);
+
+    private final EventLog eventLog;
+    private final VersionStore versions = new VersionStore();
+    private final List<TaskEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLongArray collectionVersions = new AtomicLongArray(TaskType.values().length);
 
     protected int nextId = 1;
 
+    public InMemoryTaskManager() {
+        this(DEFAULT_EVENT_CAPACITY);
+    }
+
+    public InMemoryTaskManager(int eventCapacity) {
+        this(Managers.getDefaultHistory(), eventCapacity);
+    }
+
+    public InMemoryTaskManager(HistoryManager historyManager) {
+        this(historyManager, DEFAULT_EVENT_CAPACITY);
+    }
+
+    public InMemoryTaskManager(HistoryManager historyManager, int eventCapacity) {
+        this.historyManager = historyManager;
+        this.eventLog = new EventLog(eventCapacity);
+        historyManager.bind(this::resolveViewed);
+    }
+
     @Override
     public List<Task> getHistory() {
         return historyManager.getHistory();
     }
 
+    @Override
+    public List<Task> getHistory(String viewer) {
+        return historyManager.getHistory(viewer);
+    }
+
+    @Override
+    public HistoryPage getHistoryPage(String viewer, HistoryOrder order, int limit, String cursor) {
+        return historyManager.getHistoryPage(viewer, order, limit, cursor);
+    }
+
+    @Override
+    public List<ViewCount> getTopViewed(int limit, TaskType type) {
+        ViewFrequencySketch sketch = historyManager.getViewSketch();
+        return sketch == null ? Collections.emptyList() : sketch.top(limit, type, versions::exists);
+    }
+
+    //Events
+
+    @Override
+    public void addListener(TaskEventListener listener) {
+        listeners.add(Objects.requireNonNull(listener));
+    }
+
+    @Override
+    public void removeListener(TaskEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public List<TaskEvent> getEventsSince(long sequence, int limit) {
+        return eventLog.since(sequence, limit);
+    }
+
+    @Override
+    public long getLastSequence() {
+        return eventLog.getLastSequence();
+    }
+
+    @Override
+    public ChangeSet getChangesSince(long since, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        long last = eventLog.getLastSequence();
+        if (since < 0 || since > last) {
+            return new ChangeSet(Collections.emptyList(), last, false, true);
+        }
+        // Keyed by entity id; re-inserting moves an entity behind the later changes.
+        LinkedHashMap<Integer, TaskEvent> net = new LinkedHashMap<>();
+        Set<Integer> bornInWindow = new HashSet<>();
+        long mark = since;
+        boolean more = false;
+        scan:
+        while (true) {
+            List<TaskEvent> batch = eventLog.since(mark, Math.max(limit, 64));
+            if (batch.isEmpty()) {
+                break;
+            }
+            if (batch.get(0).getSequence() > mark + 1) {
+                // The ring has overwritten part of the window.
+                return new ChangeSet(Collections.emptyList(), eventLog.getLastSequence(), false, true);
+            }
+            for (TaskEvent event : batch) {
+                int id = event.getEntityId();
+                if (!net.containsKey(id) && net.size() == limit) {
+                    more = true;
+                    break scan;
+                }
+                TaskEvent previous = net.remove(id);
+                ChangeType change = event.getChange() == ChangeType.EPIC_RECALCULATED
+                        ? ChangeType.UPDATED : event.getChange();
+                if (change == ChangeType.CREATED) {
+                    bornInWindow.add(id);
+                } else if (change == ChangeType.UPDATED && previous != null
+                        && previous.getChange() == ChangeType.CREATED) {
+                    change = ChangeType.CREATED;
+                }
+                // Created and deleted within the window: the client never had it.
+                if (!(change == ChangeType.DELETED && bornInWindow.contains(id))) {
+                    net.put(id, new TaskEvent(event.getSequence(), change, event.getEntityType(), id,
+                            event.getPayload()));
+                }
+                mark = event.getSequence();
+            }
+        }
+        return new ChangeSet(new ArrayList<>(net.values()), mark, more, false);
+    }
+
+    // Bumped after the change is applied, so a version read before a listing never claims
+    // newer data than the listing holds.
+    @Override
+    public long getCollectionVersion(TaskType type) {
+        return collectionVersions.get(type.ordinal());
+    }
+
+    @Override
+    public synchronized TaskSnapshot snapshot() {
+        return new TaskSnapshot(versions, eventLog.getLastSequence());
+    }
+
     //Task
 
     @Override
-    public List<Task> getAllTasks() {
+    public synchronized List<Task> getAllTasks() {
         return new ArrayList<>(tasks.values());
     }
 
     @Override
     public Task getTaskById(int id) {
-        Task task = tasks.get(id);
-        if (task != null) {
-            historyManager.add(task);
-            return copy(task);
+        return getTaskById(id, null);
+    }
+
+    // Lookups by id read the latest committed version and never take the manager lock.
+    @Override
+    public Task getTaskById(int id, String viewer) {
+        Task task = versions.latest(id);
+        if (task == null || TaskType.of(task) != TaskType.TASK) {
+            return null;
         }
-        return task;
+        recordView(viewer, task);
+        return copy(task);
+    }
+
+    @Override
+    public boolean containsTask(int id) {
+        Task task = versions.latest(id);
+        return task != null && TaskType.of(task) == TaskType.TASK;
     }
 
     @Override
-    public void deleteAllTasks() {
+    public Task peekTask(int id) {
+        Task task = versions.latest(id);
+        return task == null || TaskType.of(task) != TaskType.TASK ? null : copy(task);
+    }
+
+    @Override
+    public synchronized void deleteAllTasks() {
         for (Task t : tasks.values()) {
             if (t.getStartTime() != null) {
                 prioritized.remove(t);
             }
-            historyManager.remove(t.getId());
         }
+        List<Integer> removed = new ArrayList<>(tasks.keySet());
         tasks.clear();
+        for (int id : removed) {
+            emit(ChangeType.DELETED, TaskType.TASK, id, null);
+        }
     }
 
     @Override
-    public int createTask(Task task) {
+    public synchronized int createTask(Task task) {
         validateNoOverlap(task);
         task.setId(generateId());
+        task.setVersion(1);
         tasks.put(task.getId(), task);
         if (task.getStartTime() != null) {
             prioritized.add(task);
         }
+        emit(ChangeType.CREATED, task);
         return task.getId();
     }
 
     @Override
-    public void updateTask(Task task) {
+    public synchronized void updateTask(Task task) {
         if (!tasks.containsKey(task.getId())) {
             return;
         }
@@ -81,25 +238,37 @@ public class InMemoryTaskManager implements TaskManager {
         if (old != null && old.getStartTime() != null) {
             prioritized.remove(old);
         }
+        task.setVersion(old.getVersion() + 1);
         tasks.put(task.getId(), task);
         if (task.getStartTime() != null) {
             prioritized.add(task);
         }
+        emit(ChangeType.UPDATED, task);
     }
 
     @Override
-    public void deleteTaskById(int id) {
+    public synchronized void updateTask(Task task, long expectedVersion) {
+        Task current = tasks.get(task.getId());
+        if (current == null) {
+            return;
+        }
+        checkVersion(current, expectedVersion);
+        updateTask(task);
+    }
+
+    @Override
+    public synchronized void deleteTaskById(int id) {
         Task removed = tasks.remove(id);
         if (removed != null && removed.getStartTime() != null) {
             prioritized.remove(removed);
         }
         if (removed != null) {
-            historyManager.remove(id);
+            emit(ChangeType.DELETED, TaskType.TASK, id, null);
         }
     }
 
     @Override
-    public List<Task> getPrioritizedTasks() {
+    public synchronized List<Task> getPrioritizedTasks() {
         return new ArrayList<>(prioritized);
     }
 
@@ -108,59 +277,93 @@ public class InMemoryTaskManager implements TaskManager {
         if (task.getStartTime() != null) {
             prioritized.add(task);
         }
+        restored(task);
+    }
+
+    Task detachTask(int id, Supplier<Task> loader) {
+        Task removed = tasks.remove(id);
+        if (removed != null) {
+            if (removed.getStartTime() != null) {
+                prioritized.remove(removed);
+            }
+            versions.recordLazy(eventLog.getLastSequence(), id, loader);
+        }
+        return removed;
+    }
+
+    void attachTask(Task task) {
+        putTaskDirect(task);
     }
 
     //Subtask
 
     @Override
-    public List<Subtask> getAllSubtasks() {
+    public synchronized List<Subtask> getAllSubtasks() {
         return new ArrayList<>(subtasks.values());
     }
 
     @Override
     public Subtask getSubtaskById(int id) {
-        Subtask subtask = subtasks.get(id);
-        if (subtask != null) {
-            historyManager.add(subtask);
-            return copy(subtask);
-        }
-        return subtask;
+        return getSubtaskById(id, null);
     }
 
     @Override
-    public void deleteAllSubtasks() {
-        for (Integer sid : new ArrayList<>(subtasks.keySet())) {
-            historyManager.remove(sid);
+    public Subtask getSubtaskById(int id, String viewer) {
+        Task subtask = versions.latest(id);
+        if (!(subtask instanceof Subtask)) {
+            return null;
         }
+        recordView(viewer, subtask);
+        return copy((Subtask) subtask);
+    }
+
+    @Override
+    public boolean containsSubtask(int id) {
+        return versions.latest(id) instanceof Subtask;
+    }
+
+    @Override
+    public Subtask peekSubtask(int id) {
+        Task subtask = versions.latest(id);
+        return subtask instanceof Subtask ? copy((Subtask) subtask) : null;
+    }
+
+    @Override
+    public synchronized void deleteAllSubtasks() {
         prioritized.removeIf(t -> t instanceof Subtask);
+        List<Integer> removed = new ArrayList<>(subtasks.keySet());
+        subtasks.clear();
+        for (int sid : removed) {
+            emit(ChangeType.DELETED, TaskType.SUBTASK, sid, null);
+        }
         for (Epic epic : epics.values()) {
-            for (Integer sid : new ArrayList<>(epic.getSubtaskIds())) {
-                epic.removeSubtask(sid);
-            }
-            recalcEpicStatusAndTime(epic);
+            boolean hadSubtasks = !epic.getSubtaskIds().isEmpty();
+            epic.clearSubtasks();
+            refreshEpic(epic, hadSubtasks);
         }
-        subtasks.clear();
     }
 
     @Override
-    public int createSubtask(Subtask subtask) {
+    public synchronized int createSubtask(Subtask subtask) {
         Epic parent = epics.get(subtask.getEpicId());
         if (parent == null) {
             throw new IllegalArgumentException("Epic " + subtask.getEpicId() + " not found");
         }
         validateNoOverlap(subtask);
         subtask.setId(generateId());
+        subtask.setVersion(1);
         subtasks.put(subtask.getId(), subtask);
         parent.addSubtask(subtask.getId());
         if (subtask.getStartTime() != null) {
             prioritized.add(subtask);
         }
-        recalcEpicStatusAndTime(parent);
+        emit(ChangeType.CREATED, subtask);
+        refreshEpic(parent, true);
         return subtask.getId();
     }
 
     @Override
-    public void updateSubtask(Subtask subtask) {
+    public synchronized void updateSubtask(Subtask subtask) {
         if (!subtasks.containsKey(subtask.getId())) {
             return;
         }
@@ -170,30 +373,42 @@ public class InMemoryTaskManager implements TaskManager {
             prioritized.remove(old);
         }
 
+        subtask.setVersion(old.getVersion() + 1);
         subtasks.put(subtask.getId(), subtask);
         if (subtask.getStartTime() != null) {
             prioritized.add(subtask);
         }
+        emit(ChangeType.UPDATED, subtask);
 
         Epic parent = epics.get(subtask.getEpicId());
         if (parent != null) {
-            recalcEpicStatusAndTime(parent);
+            refreshEpic(parent, false);
         }
     }
 
     @Override
-    public void deleteSubtaskById(int id) {
+    public synchronized void updateSubtask(Subtask subtask, long expectedVersion) {
+        Subtask current = subtasks.get(subtask.getId());
+        if (current == null) {
+            return;
+        }
+        checkVersion(current, expectedVersion);
+        updateSubtask(subtask);
+    }
+
+    @Override
+    public synchronized void deleteSubtaskById(int id) {
         Subtask removed = subtasks.remove(id);
         if (removed != null) {
             if (removed.getStartTime() != null) {
                 prioritized.remove(removed);
             }
+            emit(ChangeType.DELETED, TaskType.SUBTASK, id, null);
             Epic parent = epics.get(removed.getEpicId());
             if (parent != null) {
                 parent.removeSubtask(id);
-                recalcEpicStatusAndTime(parent);
+                refreshEpic(parent, true);
             }
-            historyManager.remove(id);
         }
     }
 
@@ -203,61 +418,115 @@ public class InMemoryTaskManager implements TaskManager {
         if (parent != null) {
             parent.addSubtask(subtask.getId());
             recalcEpicStatusAndTime(parent);
+            restored(parent);
+        }
+        if (subtask.getStartTime() != null) {
+            prioritized.add(subtask);
+        }
+        restored(subtask);
+    }
+
+    // Unlike putSubtaskDirect, the parent epic keeps listing the id while it is detached.
+    Subtask detachSubtask(int id, Supplier<Task> loader) {
+        Subtask removed = subtasks.remove(id);
+        if (removed != null) {
+            if (removed.getStartTime() != null) {
+                prioritized.remove(removed);
+            }
+            versions.recordLazy(eventLog.getLastSequence(), id, loader);
         }
+        return removed;
+    }
+
+    void attachSubtask(Subtask subtask) {
+        subtasks.put(subtask.getId(), subtask);
         if (subtask.getStartTime() != null) {
             prioritized.add(subtask);
         }
+        restored(subtask);
     }
 
     //Epic
 
     @Override
-    public List<Epic> getAllEpics() {
+    public synchronized List<Epic> getAllEpics() {
         return new ArrayList<>(epics.values());
     }
 
     @Override
     public Epic getEpicById(int id) {
-        Epic epic = epics.get(id);
-        if (epic != null) {
-            historyManager.add(epic);
-            return copy(epic);
-        }
-        return epic;
+        return getEpicById(id, null);
     }
 
     @Override
-    public void deleteAllEpics() {
-        for (Epic e : epics.values()) {
-            for (Integer sid : e.getSubtaskIds()) {
-                historyManager.remove(sid);
-            }
-            historyManager.remove(e.getId());
+    public Epic getEpicById(int id, String viewer) {
+        Task epic = versions.latest(id);
+        if (!(epic instanceof Epic)) {
+            return null;
         }
+        recordView(viewer, epic);
+        return copy((Epic) epic);
+    }
+
+    @Override
+    public boolean containsEpic(int id) {
+        return versions.latest(id) instanceof Epic;
+    }
+
+    @Override
+    public Epic peekEpic(int id) {
+        Task epic = versions.latest(id);
+        return epic instanceof Epic ? copy((Epic) epic) : null;
+    }
+
+    @Override
+    public synchronized void deleteAllEpics() {
         prioritized.removeIf(t -> t instanceof Subtask);
+        List<Integer> removedSubtasks = new ArrayList<>(subtasks.keySet());
+        List<Integer> removedEpics = new ArrayList<>(epics.keySet());
         epics.clear();
         subtasks.clear();
+        for (int sid : removedSubtasks) {
+            emit(ChangeType.DELETED, TaskType.SUBTASK, sid, null);
+        }
+        for (int eid : removedEpics) {
+            emit(ChangeType.DELETED, TaskType.EPIC, eid, null);
+        }
     }
 
     @Override
-    public int createEpic(Epic epic) {
+    public synchronized int createEpic(Epic epic) {
         epic.setId(generateId());
+        epic.setVersion(1);
         epics.put(epic.getId(), epic);
         recalcEpicStatusAndTime(epic);
+        emit(ChangeType.CREATED, epic);
         return epic.getId();
     }
 
     @Override
-    public void updateEpic(Epic epic) {
+    public synchronized void updateEpic(Epic epic) {
         if (!epics.containsKey(epic.getId())) return;
         Epic existing = epics.get(epic.getId());
         existing.setTitle(epic.getTitle());
         existing.setDescription(epic.getDescription());
+        existing.setVersion(existing.getVersion() + 1);
         recalcEpicStatusAndTime(existing);
+        emit(ChangeType.UPDATED, existing);
     }
 
     @Override
-    public void deleteEpicById(int id) {
+    public synchronized void updateEpic(Epic epic, long expectedVersion) {
+        Epic current = epics.get(epic.getId());
+        if (current == null) {
+            return;
+        }
+        checkVersion(current, expectedVersion);
+        updateEpic(epic);
+    }
+
+    @Override
+    public synchronized void deleteEpicById(int id) {
         Epic removed = epics.remove(id);
         if (removed != null) {
             for (Integer sid : new ArrayList<>(removed.getSubtaskIds())) {
@@ -265,14 +534,16 @@ public class InMemoryTaskManager implements TaskManager {
                 if (s != null && s.getStartTime() != null) {
                     prioritized.remove(s);
                 }
-                historyManager.remove(sid);
+                if (s != null) {
+                    emit(ChangeType.DELETED, TaskType.SUBTASK, sid, null);
+                }
             }
-            historyManager.remove(id);
+            emit(ChangeType.DELETED, TaskType.EPIC, id, null);
         }
     }
 
     @Override
-    public List<Subtask> getSubtasksByEpic(int epicId) {
+    public synchronized List<Subtask> getSubtasksByEpic(int epicId) {
         Epic epic = epics.get(epicId);
         if (epic == null) {
             return Collections.emptyList();
@@ -288,9 +559,124 @@ public class InMemoryTaskManager implements TaskManager {
         return list;
     }
 
+    // Queries
+
+    @Override
+    public synchronized TaskPage<Task> queryTasks(TaskQuery query) {
+        return select(tasks.values(), query);
+    }
+
+    @Override
+    public synchronized TaskPage<Subtask> querySubtasks(TaskQuery query) {
+        if (query.getEpicId() == null) {
+            return select(subtasks.values(), query);
+        }
+        // Filtering by epic only needs to look at that epic's subtasks.
+        List<Subtask> ofEpic = new ArrayList<>();
+        for (int id : subtaskIdsOf(query.getEpicId())) {
+            Subtask s = subtasks.get(id);
+            if (s != null) {
+                ofEpic.add(s);
+            }
+        }
+        return select(ofEpic, query);
+    }
+
+    @Override
+    public synchronized TaskPage<Epic> queryEpics(TaskQuery query) {
+        return select(epics.values(), query);
+    }
+
+    // Walks the priority index from the cursor, so a page costs O(log n) plus what it scans.
+    @Override
+    public synchronized TaskPage<Task> queryPrioritized(TaskQuery query) {
+        TaskQuery q = query.inPriorityOrder();
+        Task probe = q.probe();
+        List<Task> items = new ArrayList<>();
+        for (Task t : probe == null ? prioritized : prioritized.tailSet(probe, false)) {
+            if (!q.matches(t)) {
+                continue;
+            }
+            if (items.size() == q.getLimit()) {
+                return page(items, q, true);
+            }
+            items.add(t);
+        }
+        return page(items, q, false);
+    }
+
+    // Keeps the first limit + 1 matches in a bounded heap instead of sorting the whole collection.
+    <T extends Task> TaskPage<T> select(Iterable<? extends T> source, TaskQuery query) {
+        Comparator<Task> order = query.order();
+        Task probe = query.probe();
+        int keep = query.getLimit() + 1;
+        // Default capacity: the heap grows with the matches, not with the requested limit.
+        PriorityQueue<T> heap = new PriorityQueue<>(order.reversed());
+        for (T t : source) {
+            if (!query.matches(t) || (probe != null && order.compare(t, probe) <= 0)) {
+                continue;
+            }
+            heap.offer(t);
+            if (heap.size() > keep) {
+                heap.poll();
+            }
+        }
+        List<T> items = new ArrayList<>(heap);
+        items.sort(order);
+        boolean more = items.size() > query.getLimit();
+        if (more) {
+            items.remove(items.size() - 1);
+        }
+        return page(items, query, more);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> TaskPage<T> page(List<T> items, TaskQuery query, boolean more) {
+        List<T> copies = new ArrayList<>(items.size());
+        for (T t : items) {
+            copies.add((T) frozenCopy(t));
+        }
+        String next = more && !items.isEmpty() ? query.cursorOf(items.get(items.size() - 1)) : null;
+        return new TaskPage<>(copies, next);
+    }
+
     protected void putEpicDirect(Epic epic) {
         epics.put(epic.getId(), epic);
         recalcEpicStatusAndTime(epic);
+        restored(epic);
+    }
+
+    List<Integer> subtaskIdsOf(int epicId) {
+        Epic epic = epics.get(epicId);
+        return epic == null ? Collections.emptyList() : epic.getSubtaskIds();
+    }
+
+    // The tombstone is recorded before history is purged on delete, so a view racing with
+    // a delete either lands before the purge or sees the tombstone and undoes itself.
+    void recordView(String viewer, Task task) {
+        historyManager.add(viewer, task);
+        if (versions.latest(task.getId()) == null) {
+            historyManager.remove(task.getId());
+        }
+    }
+
+    // History keeps only id and type; a read gets a copy of the entity as it is now.
+    private Task resolveViewed(int id, TaskType type) {
+        Task task = versions.latest(id);
+        return task == null || TaskType.of(task) != type ? null : frozenCopy(task);
+    }
+
+    // Lets a subclass contribute subtasks that are no longer held in memory to epic aggregates.
+    void collectDetachedSubtasks(Epic epic, EpicAggregate aggregate) {
+    }
+
+    // Lets a subclass check time windows of entities that are no longer held in memory.
+    boolean overlapsDetached(Task candidate) {
+        return false;
+    }
+
+    HistoryManager getHistoryManager() {
+        return historyManager;
     }
 
     protected void setNextIdAfterLoad(int next) {
@@ -329,13 +715,19 @@ public class InMemoryTaskManager implements TaskManager {
         }
     }
 
+    private static void checkVersion(Task current, long expectedVersion) {
+        if (current.getVersion() != expectedVersion) {
+            throw new VersionConflictException(current.getId(), expectedVersion, current.getVersion());
+        }
+    }
+
     private void validateNoOverlap(Task candidate) {
         if (candidate.getStartTime() == null || candidate.getDuration() == null) {
             return;
         }
         Task left = prioritized.lower(candidate);
         Task right = prioritized.higher(candidate);
-        if (overlaps(candidate, left) || overlaps(candidate, right)) {
+        if (overlaps(candidate, left) || overlaps(candidate, right) || overlapsDetached(candidate)) {
             throw new IllegalArgumentException("Время выполнения задач совпадает");
         }
     }
@@ -357,78 +749,147 @@ public class InMemoryTaskManager implements TaskManager {
                 && b.getStartTime().isBefore(aEnd);
     }
 
-    private void recalcEpicStatusAndTime(Epic epic) {
-        List<Integer> ids = epic.getSubtaskIds();
-
-        if (ids.isEmpty()) {
-            epic.setStatus(Status.NEW);
-            epic.setDuration(Duration.ZERO);
-            epic.setStartTime(null);
-            epic.setEndTime(null);
-            return;
+    private void refreshEpic(Epic epic, boolean membershipChanged) {
+        if (recalcEpicStatusAndTime(epic) || membershipChanged) {
+            epic.setVersion(epic.getVersion() + 1);
+            emit(ChangeType.EPIC_RECALCULATED, epic);
         }
+    }
 
-        boolean allNew = true;
-        boolean allDone = true;
-        Duration total = Duration.ZERO;
-        LocalDateTime minStart = null;
-        LocalDateTime maxEnd = null;
+    private boolean recalcEpicStatusAndTime(Epic epic) {
+        Status oldStatus = epic.getStatus();
+        Duration oldDuration = epic.getDuration();
+        LocalDateTime oldStart = epic.getStartTime();
+        LocalDateTime oldEnd = epic.getEndTime();
+
+        applyEpicAggregates(epic);
+
+        return oldStatus != epic.getStatus()
+                || !Objects.equals(oldDuration, epic.getDuration())
+                || !Objects.equals(oldStart, epic.getStartTime())
+                || !Objects.equals(oldEnd, epic.getEndTime());
+    }
 
-        for (int sid : ids) {
+    private void applyEpicAggregates(Epic epic) {
+        EpicAggregate aggregate = new EpicAggregate();
+        for (int sid : epic.getSubtaskIds()) {
             Subtask s = subtasks.get(sid);
-            if (s == null) {
-                continue;
+            if (s != null) {
+                aggregate.add(s.getStatus(), s.getDuration(), s.getStartTime(), s.getEndTime());
             }
-            if (s.getStatus() != Status.NEW) {
+        }
+        collectDetachedSubtasks(epic, aggregate);
+        aggregate.applyTo(epic);
+    }
+
+    static final class EpicAggregate {
+        private int count;
+        private boolean allNew = true;
+        private boolean allDone = true;
+        private Duration total = Duration.ZERO;
+        private LocalDateTime minStart;
+        private LocalDateTime maxEnd;
+
+        void add(Status status, Duration duration, LocalDateTime start, LocalDateTime end) {
+            count++;
+            if (status != Status.NEW) {
                 allNew = false;
             }
-            if (s.getStatus() != Status.DONE) {
+            if (status != Status.DONE) {
                 allDone = false;
             }
-            if (s.getDuration() != null) {
-                total = total.plus(s.getDuration());
+            if (duration != null) {
+                total = total.plus(duration);
             }
-            LocalDateTime st = s.getStartTime();
-            LocalDateTime en = s.getEndTime();
-            if (st != null && (minStart == null || st.isBefore(minStart))) {
-                minStart = st;
+            if (start != null && (minStart == null || start.isBefore(minStart))) {
+                minStart = start;
             }
-            if (en != null && (maxEnd == null || en.isAfter(maxEnd))) {
-                maxEnd = en;
+            if (end != null && (maxEnd == null || end.isAfter(maxEnd))) {
+                maxEnd = end;
             }
         }
 
-        epic.setStatus(allNew ? Status.NEW : (allDone ? Status.DONE : Status.IN_PROGRESS));
-        epic.setDuration(total);
-        epic.setStartTime(minStart);
-        epic.setEndTime(maxEnd);
+        void applyTo(Epic epic) {
+            if (count == 0) {
+                epic.setStatus(Status.NEW);
+                epic.setDuration(Duration.ZERO);
+                epic.setStartTime(null);
+                epic.setEndTime(null);
+                return;
+            }
+            epic.setStatus(allNew ? Status.NEW : (allDone ? Status.DONE : Status.IN_PROGRESS));
+            epic.setDuration(total);
+            epic.setStartTime(minStart);
+            epic.setEndTime(maxEnd);
+        }
+    }
+
+    private void emit(ChangeType change, Task entity) {
+        emit(change, TaskType.of(entity), entity.getId(), entity);
     }
 
-    private Task copy(Task t) {
+    private void emit(ChangeType change, TaskType type, int id, Task entity) {
+        TaskEvent event = new TaskEvent(eventLog.nextSequence(), change, type, id, frozenCopy(entity));
+        versions.record(event.getSequence(), id, event.getPayload());
+        if (change == ChangeType.DELETED) {
+            historyManager.remove(id);
+        }
+        eventLog.append(event);
+        collectionVersions.incrementAndGet(type.ordinal());
+        for (TaskEventListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Event listener failed on " + change + " " + type + " " + id, e);
+            }
+        }
+    }
+
+    private void restored(Task entity) {
+        versions.record(eventLog.getLastSequence(), entity.getId(), frozenCopy(entity));
+    }
+
+    static Task frozenCopy(Task t) {
+        if (t instanceof Epic) {
+            return copy((Epic) t);
+        }
+        if (t instanceof Subtask) {
+            return copy((Subtask) t);
+        }
+        return copy(t);
+    }
+
+    private static Task copy(Task t) {
         if (t == null) return null;
         Task c = new Task(t.getId(), t.getTitle(), t.getDescription());
         c.setStatus(t.getStatus());
         c.setDuration(t.getDuration());
         c.setStartTime(t.getStartTime());
+        c.setVersion(t.getVersion());
         return c;
     }
 
-    private Subtask copy(Subtask s) {
+    private static Subtask copy(Subtask s) {
         if (s == null) return null;
         Subtask c = new Subtask(s.getId(), s.getTitle(), s.getDescription(), s.getEpicId());
         c.setStatus(s.getStatus());
         c.setDuration(s.getDuration());
         c.setStartTime(s.getStartTime());
+        c.setVersion(s.getVersion());
         return c;
     }
 
-    private Epic copy(Epic e) {
+    private static Epic copy(Epic e) {
         if (e == null) return null;
         Epic c = new Epic(e.getId(), e.getTitle(), e.getDescription());
         c.setStatus(e.getStatus());
         c.setDuration(e.getDuration());
         c.setStartTime(e.getStartTime());
         c.setEndTime(e.getEndTime());
+        c.setVersion(e.getVersion());
+        for (Integer sid : e.getSubtaskIds()) {
+            c.addSubtask(sid);
+        }
         return c;
     }
 }
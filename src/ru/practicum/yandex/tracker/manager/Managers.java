@@ -1,15 +1,34 @@
 package ru.practicum.yandex.tracker.manager;
 
 public class Managers {
+    public static final int DEFAULT_HISTORY_PER_VIEWER = 1000;
+    public static final int DEFAULT_HISTORY_VIEWERS = 10_000;
+
     public static TaskManager getDefault() {
-        return new InMemoryTaskManager();
+        return new InMemoryTaskManager(getPartitionedHistory(DEFAULT_HISTORY_PER_VIEWER, DEFAULT_HISTORY_VIEWERS));
     }
 
     public static HistoryManager getDefaultHistory() {
         return new InMemoryHistoryManager();
     }
 
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new InMemoryHistoryManager(capacity);
+    }
+
+    public static HistoryManager getPartitionedHistory(int capacityPerViewer, int maxViewers) {
+        return new PartitionedHistoryManager(capacityPerViewer, maxViewers);
+    }
+
+    public static AsyncHistoryManager getAsyncHistory(HistoryManager delegate) {
+        return new AsyncHistoryManager(delegate);
+    }
+
     public static FileBackedTaskManager getFileBacked(java.io.File file) {
         return new FileBackedTaskManager(file);
     }
+
+    public static TieredTaskManager getTiered(java.io.File coldFile, java.time.Duration threshold) {
+        return new TieredTaskManager(coldFile, threshold);
+    }
 }
@@ -0,0 +1,70 @@
+package ru.practicum.yandex.tracker.manager;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Bounded lock-free multi-producer / single-consumer ring. Each slot carries a sequence
+// stamp: producers claim a position with one CAS and publish by advancing the stamp, the
+// consumer reads slots strictly in position order.
+class MpscRing<E> {
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray stamps;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    MpscRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.items = new AtomicReferenceArray<>(capacity);
+        this.stamps = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            stamps.set(i, i);
+        }
+    }
+
+    boolean offer(E item) {
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long diff = stamps.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.lazySet(idx, item);
+                    stamps.set(idx, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    // Single consumer only.
+    E poll() {
+        long h = head;
+        int idx = (int) (h & mask);
+        if (stamps.get(idx) != h + 1) {
+            return null;
+        }
+        E item = items.get(idx);
+        items.lazySet(idx, null);
+        stamps.set(idx, h + mask + 1);
+        head = h + 1;
+        return item;
+    }
+
+    long produced() {
+        return tail.get();
+    }
+
+    long consumed() {
+        return head;
+    }
+}
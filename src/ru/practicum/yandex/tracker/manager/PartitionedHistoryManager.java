@@ -0,0 +1,237 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// One bounded history per viewer (user or session). Viewers are spread over a fixed set of
+// lock stripes, so views from different viewers rarely contend. The number of partitions is
+// capped as well: the least recently active viewer is dropped first. Activity order is kept in
+// an access-ordered map, so finding that viewer does not depend on how many there are.
+public class PartitionedHistoryManager implements HistoryManager {
+    public static final String SHARED = "";
+    public static final int DEFAULT_STRIPES = 32;
+
+    private final int partitionCapacity;
+    private final int maxPartitions;
+    private final Object[] stripes;
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    // Same partitions, least recently active first. Guarded by itself and only ever locked
+    // inside a stripe lock, never the other way round.
+    private final LinkedHashMap<String, Partition> recency = new LinkedHashMap<>(16, 0.75f, true);
+    private final ViewFrequencySketch sketch = new ViewFrequencySketch();
+    private volatile TaskResolver resolver = TaskResolver.UNBOUND;
+    private volatile Consumer<String> evictionListener = viewer -> { };
+
+    private static final class Partition {
+        final InMemoryHistoryManager history;
+
+        Partition(int capacity) {
+            this.history = new InMemoryHistoryManager(capacity, null);
+        }
+    }
+
+    public PartitionedHistoryManager(int partitionCapacity, int maxPartitions) {
+        this(partitionCapacity, maxPartitions, DEFAULT_STRIPES);
+    }
+
+    public PartitionedHistoryManager(int partitionCapacity, int maxPartitions, int stripeCount) {
+        if (maxPartitions <= 0 || stripeCount <= 0) {
+            throw new IllegalArgumentException("Partition and stripe counts must be positive");
+        }
+        this.partitionCapacity = partitionCapacity;
+        this.maxPartitions = maxPartitions;
+        this.stripes = new Object[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    @Override
+    public void add(Task task) {
+        add(SHARED, task);
+    }
+
+    @Override
+    public void add(String viewer, Task task) {
+        if (task == null) return;
+        sketch.record(task.getId(), TaskType.of(task), 1);
+        String key = keyOf(viewer);
+        Map.Entry<String, Partition> evicted = null;
+        synchronized (stripeOf(key)) {
+            Partition p = partitions.get(key);
+            if (p == null) {
+                p = new Partition(partitionCapacity);
+                p.history.bind(resolver);
+                partitions.put(key, p);
+                evicted = admit(key, p);
+            } else {
+                touch(key);
+            }
+            p.history.add(task);
+        }
+        if (evicted != null) {
+            evict(evicted);
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        sketch.forget(id);
+        for (Map.Entry<String, Partition> e : partitions.entrySet()) {
+            synchronized (stripeOf(e.getKey())) {
+                e.getValue().history.remove(id);
+            }
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        return getHistory(SHARED);
+    }
+
+    @Override
+    public List<Task> getHistory(String viewer) {
+        return resolver.resolveAll(getEntries(viewer));
+    }
+
+    @Override
+    public List<HistoryEntry> getEntries() {
+        return getEntries(SHARED);
+    }
+
+    @Override
+    public List<HistoryEntry> getEntries(String viewer) {
+        String key = keyOf(viewer);
+        synchronized (stripeOf(key)) {
+            Partition p = partitions.get(key);
+            if (p == null) {
+                return Collections.emptyList();
+            }
+            touch(key);
+            return p.history.getEntries();
+        }
+    }
+
+    @Override
+    public void bind(TaskResolver resolver) {
+        this.resolver = resolver;
+        for (Map.Entry<String, Partition> e : partitions.entrySet()) {
+            synchronized (stripeOf(e.getKey())) {
+                e.getValue().history.bind(resolver);
+            }
+        }
+    }
+
+    @Override
+    public HistoryPage getHistoryPage(HistoryOrder order, int limit, String cursor) {
+        return getHistoryPage(SHARED, order, limit, cursor);
+    }
+
+    // Only the id/type entries are copied under the stripe lock; entities are resolved after
+    // it is released, so a slow lookup does not hold up views from viewers on the same stripe.
+    @Override
+    public HistoryPage getHistoryPage(String viewer, HistoryOrder order, int limit, String cursor) {
+        HistoryPage.checkLimit(limit);
+        String key = keyOf(viewer);
+        List<Task> items = new ArrayList<>();
+        List<HistoryEntry> batch = new ArrayList<>();
+        String next = cursor;
+        do {
+            batch.clear();
+            synchronized (stripeOf(key)) {
+                Partition p = partitions.get(key);
+                if (p == null) {
+                    return new HistoryPage(items, null);
+                }
+                touch(key);
+                next = p.history.collectPage(order, limit - items.size(), next, batch);
+            }
+            items.addAll(resolver.resolveAll(batch));
+        } while (next != null && items.size() < limit);
+        return new HistoryPage(items, next);
+    }
+
+    @Override
+    public void setViewerEvictionListener(Consumer<String> listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public ViewFrequencySketch getViewSketch() {
+        return sketch;
+    }
+
+    @Override
+    public int size() {
+        int total = 0;
+        for (Partition p : partitions.values()) {
+            total += p.history.size();
+        }
+        return total;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        long total = 0;
+        for (Partition p : partitions.values()) {
+            total += p.history.getEvictionCount();
+        }
+        return total;
+    }
+
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    private void touch(String key) {
+        synchronized (recency) {
+            recency.get(key);
+        }
+    }
+
+    // Registers a new partition as the most recently active and, past the cap, unlinks the least
+    // recently active one, which the caller removes once it has left its own stripe.
+    private Map.Entry<String, Partition> admit(String key, Partition p) {
+        synchronized (recency) {
+            recency.put(key, p);
+            if (recency.size() <= maxPartitions) {
+                return null;
+            }
+            Iterator<Map.Entry<String, Partition>> it = recency.entrySet().iterator();
+            Map.Entry<String, Partition> eldest = it.next();
+            it.remove();
+            return eldest;
+        }
+    }
+
+    // A view of the evicted viewer that raced the unlinking may still have gone into its
+    // partition; it is dropped along with it. A partition recreated since is left alone.
+    private void evict(Map.Entry<String, Partition> eldest) {
+        boolean removed;
+        synchronized (stripeOf(eldest.getKey())) {
+            removed = partitions.remove(eldest.getKey(), eldest.getValue());
+        }
+        if (removed) {
+            evictionListener.accept(eldest.getKey());
+        }
+    }
+
+    private Object stripeOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & 0x7fffffff) % stripes.length];
+    }
+
+    private static String keyOf(String viewer) {
+        return viewer == null ? SHARED : viewer;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+public final class TaskEvent {
+    private final long sequence;
+    private final ChangeType change;
+    private final TaskType entityType;
+    private final int entityId;
+    private final Task payload;
+
+    public TaskEvent(long sequence, ChangeType change, TaskType entityType, int entityId, Task payload) {
+        this.sequence = sequence;
+        this.change = change;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.payload = payload;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public ChangeType getChange() {
+        return change;
+    }
+
+    public TaskType getEntityType() {
+        return entityType;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    // Copy of the entity as of this event; null for DELETED.
+    public Task getPayload() {
+        return payload;
+    }
+}
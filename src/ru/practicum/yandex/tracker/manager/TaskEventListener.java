@@ -0,0 +1,7 @@
+package ru.practicum.yandex.tracker.manager;
+
+@FunctionalInterface
+public interface TaskEventListener {
+
+    void onEvent(TaskEvent event);
+}
@@ -3,6 +3,7 @@ package ru.practicum.yandex.tracker.manager;
 import ru.practicum.yandex.tracker.model.Epic;
 import ru.practicum.yandex.tracker.model.Subtask;
 import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
 
 import java.util.List;
 
@@ -10,10 +11,24 @@ public interface TaskManager {
 
     List<Task> getHistory();
 
+    List<Task> getHistory(String viewer);
+
+    HistoryPage getHistoryPage(String viewer, HistoryOrder order, int limit, String cursor);
+
+    // Most viewed entities over the recent window; a null type means any type.
+    List<ViewCount> getTopViewed(int limit, TaskType type);
+
     List<Task> getAllTasks();
 
     Task getTaskById(int id);
 
+    Task getTaskById(int id, String viewer);
+
+    // Side-effect-free lookups: nothing is recorded in history. The returned entity is a copy.
+    boolean containsTask(int id);
+
+    Task peekTask(int id);
+
     List<Task> getPrioritizedTasks();
 
     void deleteAllTasks();
@@ -22,31 +37,75 @@ public interface TaskManager {
 
     void updateTask(Task task);
 
+    void updateTask(Task task, long expectedVersion);
+
     void deleteTaskById(int id);
 
     List<Subtask> getAllSubtasks();
 
     Subtask getSubtaskById(int id);
 
+    Subtask getSubtaskById(int id, String viewer);
+
+    boolean containsSubtask(int id);
+
+    Subtask peekSubtask(int id);
+
     void deleteAllSubtasks();
 
     int createSubtask(Subtask subtask);
 
     void updateSubtask(Subtask subtask);
 
+    void updateSubtask(Subtask subtask, long expectedVersion);
+
     void deleteSubtaskById(int id);
 
     List<Epic> getAllEpics();
 
     Epic getEpicById(int id);
 
+    Epic getEpicById(int id, String viewer);
+
+    boolean containsEpic(int id);
+
+    Epic peekEpic(int id);
+
     void deleteAllEpics();
 
     int createEpic(Epic epic);
 
     void updateEpic(Epic epic);
 
+    void updateEpic(Epic epic, long expectedVersion);
+
     void deleteEpicById(int id);
 
     List<Subtask> getSubtasksByEpic(int epicId);
+
+    // Paged, filtered views of the collections; each returns at most query.getLimit() copies.
+    TaskPage<Task> queryTasks(TaskQuery query);
+
+    TaskPage<Subtask> querySubtasks(TaskQuery query);
+
+    TaskPage<Epic> queryEpics(TaskQuery query);
+
+    // Always in priority order; the query's sort is ignored.
+    TaskPage<Task> queryPrioritized(TaskQuery query);
+
+    void addListener(TaskEventListener listener);
+
+    void removeListener(TaskEventListener listener);
+
+    List<TaskEvent> getEventsSince(long sequence, int limit);
+
+    long getLastSequence();
+
+    // At most `limit` entities, each with its latest payload; see ChangeSet.
+    ChangeSet getChangesSince(long since, int limit);
+
+    // Changes whenever an entity of the given type is created, updated, recalculated or deleted.
+    long getCollectionVersion(TaskType type);
+
+    TaskSnapshot snapshot();
 }
\ No newline at end of file
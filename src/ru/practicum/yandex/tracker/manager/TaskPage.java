@@ -0,0 +1,25 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.util.Collections;
+import java.util.List;
+
+public final class TaskPage<T extends Task> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    public TaskPage(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    // Null once there is nothing after this page.
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
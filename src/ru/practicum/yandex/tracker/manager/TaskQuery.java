@@ -0,0 +1,143 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Status;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+
+// Filters, order and page bounds for a list query. Paging is keyset-based: the cursor carries
+// the sort key and id of the last returned entity, so a page stays stable while others change.
+public class TaskQuery {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 1000;
+
+    private Status status;
+    private Integer epicId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private TaskSort sort = TaskSort.ID;
+    private boolean descending;
+    private int limit = DEFAULT_LIMIT;
+    private String cursor;
+
+    public TaskQuery status(Status status) {
+        this.status = status;
+        return this;
+    }
+
+    public TaskQuery epicId(Integer epicId) {
+        this.epicId = epicId;
+        return this;
+    }
+
+    // Keeps only timed entities that overlap [from, to); either bound may be null.
+    public TaskQuery window(LocalDateTime from, LocalDateTime to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    public TaskQuery sort(TaskSort sort, boolean descending) {
+        this.sort = sort == null ? TaskSort.ID : sort;
+        this.descending = descending;
+        return this;
+    }
+
+    public TaskQuery limit(int limit) {
+        if (limit <= 0 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Page limit must be between 1 and " + MAX_LIMIT + ": " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public TaskQuery cursor(String cursor) {
+        this.cursor = cursor == null || cursor.isEmpty() ? null : cursor;
+        if (this.cursor != null) {
+            probe();
+        }
+        return this;
+    }
+
+    TaskQuery inPriorityOrder() {
+        TaskQuery q = new TaskQuery().status(status).epicId(epicId).window(from, to).sort(TaskSort.START_TIME, false);
+        q.limit = limit;
+        q.cursor = cursor;
+        return q;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    Integer getEpicId() {
+        return epicId;
+    }
+
+    boolean matches(Task t) {
+        if (status != null && t.getStatus() != status) {
+            return false;
+        }
+        if (epicId != null && !(t instanceof Subtask && ((Subtask) t).getEpicId() == epicId)) {
+            return false;
+        }
+        if (from != null || to != null) {
+            LocalDateTime start = t.getStartTime();
+            LocalDateTime end = t.getEndTime();
+            if (start == null || end == null) {
+                return false;
+            }
+            if (from != null && !end.isAfter(from)) {
+                return false;
+            }
+            if (to != null && !start.isBefore(to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Comparator<Task> order() {
+        Comparator<Task> order = switch (sort) {
+            case ID -> Comparator.comparingInt(Task::getId);
+            case START_TIME -> InMemoryTaskManager.PRIORITY_ORDER;
+            case TITLE -> Comparator.comparing((Task t) -> t.getTitle() == null ? "" : t.getTitle())
+                    .thenComparingInt(Task::getId);
+        };
+        return descending ? order.reversed() : order;
+    }
+
+    // A stand-in for the last entity of the previous page, or null on the first page.
+    Task probe() {
+        if (cursor == null) {
+            return null;
+        }
+        int dot = cursor.lastIndexOf('.');
+        try {
+            int id = Integer.parseInt(cursor.substring(dot + 1));
+            String key = dot < 0 ? "" : new String(Base64.getUrlDecoder().decode(cursor.substring(0, dot)),
+                    StandardCharsets.UTF_8);
+            Task probe = new Task(id, sort == TaskSort.TITLE ? key : "", "");
+            if (sort == TaskSort.START_TIME && !key.isEmpty()) {
+                probe.setStartTime(LocalDateTime.parse(key));
+            }
+            return probe;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed page cursor: " + cursor, e);
+        }
+    }
+
+    String cursorOf(Task last) {
+        String key = switch (sort) {
+            case ID -> "";
+            case START_TIME -> last.getStartTime() == null ? "" : last.getStartTime().toString();
+            case TITLE -> last.getTitle() == null ? "" : last.getTitle();
+        };
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8))
+                + "." + last.getId();
+    }
+}
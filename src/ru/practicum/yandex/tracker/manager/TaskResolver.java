@@ -0,0 +1,44 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@FunctionalInterface
+public interface TaskResolver {
+
+    // Used by a history manager that is not bound to a task manager: entries carry a copy of
+    // the entity as it was viewed, and each read gets its own copy of that.
+    TaskResolver UNBOUND = new TaskResolver() {
+        @Override
+        public Task resolve(int id, TaskType type) {
+            return null;
+        }
+
+        @Override
+        public Task resolve(HistoryEntry entry) {
+            Task viewed = entry.getSnapshot();
+            return viewed == null ? null : InMemoryTaskManager.frozenCopy(viewed);
+        }
+    };
+
+    // Returns the current state of the entity, or null if it no longer exists.
+    Task resolve(int id, TaskType type);
+
+    default Task resolve(HistoryEntry entry) {
+        return resolve(entry.getId(), entry.getType());
+    }
+
+    default List<Task> resolveAll(List<HistoryEntry> entries) {
+        List<Task> out = new ArrayList<>(entries.size());
+        for (HistoryEntry e : entries) {
+            Task t = resolve(e);
+            if (t != null) {
+                out.add(t);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Epic;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Read-only view of the manager as of one event sequence. Returned entities are shared
+// frozen copies and must not be modified. Close it when done; a forgotten snapshot is
+// released once it becomes unreachable.
+public final class TaskSnapshot implements AutoCloseable {
+    private final VersionStore store;
+    private final long version;
+    private final Cleaner.Cleanable registration;
+
+    TaskSnapshot(VersionStore store, long version) {
+        this.store = store;
+        this.version = version;
+        this.registration = store.open(this, version);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Task> getAllTasks() {
+        return store.scan(version, Task.class, t -> TaskType.of(t) == TaskType.TASK);
+    }
+
+    public List<Subtask> getAllSubtasks() {
+        return store.scan(version, Subtask.class, t -> t instanceof Subtask);
+    }
+
+    public List<Epic> getAllEpics() {
+        return store.scan(version, Epic.class, t -> t instanceof Epic);
+    }
+
+    public List<Task> getPrioritizedTasks() {
+        List<Task> list = store.scan(version, Task.class,
+                t -> !(t instanceof Epic) && t.getStartTime() != null);
+        list.sort(InMemoryTaskManager.PRIORITY_ORDER);
+        return list;
+    }
+
+    public Task getTaskById(int id) {
+        Task t = store.visible(id, version);
+        return TaskType.of(t) == TaskType.TASK ? t : null;
+    }
+
+    public Subtask getSubtaskById(int id) {
+        Task t = store.visible(id, version);
+        return t instanceof Subtask ? (Subtask) t : null;
+    }
+
+    public Epic getEpicById(int id) {
+        Task t = store.visible(id, version);
+        return t instanceof Epic ? (Epic) t : null;
+    }
+
+    public List<Subtask> getSubtasksByEpic(int epicId) {
+        Epic epic = getEpicById(epicId);
+        if (epic == null) {
+            return Collections.emptyList();
+        }
+        List<Integer> ids = epic.getSubtaskIds();
+        List<Subtask> list = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Subtask s = getSubtaskById(ids.get(i));
+            if (s != null) {
+                list.add(s);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void close() {
+        registration.clean();
+    }
+}
@@ -0,0 +1,193 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Status;
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Fires STARTED / ENDED / OVERDUE notifications for timed tasks and subtasks. Timers are
+// kept in a TimingWheel and follow the manager's change events, so updates and deletes
+// reschedule or cancel them without rescanning the board.
+public class TaskTimerService implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(TaskTimerService.class.getName());
+
+    public static final Duration DEFAULT_TICK = Duration.ofSeconds(1);
+
+    private final TaskManager manager;
+    private final Clock clock;
+    private final Duration tick;
+    private final TimingWheel wheel;
+    private final Map<Integer, TimingWheel.Timeout[]> timers = new HashMap<>();
+    private final List<TimerListener> listeners = new CopyOnWriteArrayList<>();
+    private final TaskEventListener onChange = this::onChange;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+    private ScheduledExecutorService ticker;
+
+    public TaskTimerService(TaskManager manager) {
+        this(manager, DEFAULT_TICK, Clock.systemDefaultZone());
+    }
+
+    public TaskTimerService(TaskManager manager, Duration tick, Clock clock) {
+        this.manager = manager;
+        this.clock = clock;
+        this.tick = tick;
+        this.wheel = new TimingWheel(tick.toMillis(), clock.millis());
+    }
+
+    public void addListener(TimerListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TimerListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void start() {
+        subscribe();
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread th = new Thread(r, "task-timers");
+            th.setDaemon(true);
+            return th;
+        });
+        long ms = tick.toMillis();
+        ticker.scheduleAtFixedRate(this::fireDue, ms, ms, TimeUnit.MILLISECONDS);
+    }
+
+    // Schedules timers for everything already on the board and follows later changes;
+    // without start() the caller drives the wheel through fireDue(). Repeated calls, including
+    // the one made by start(), do nothing. InMemoryTaskManager changes and notifies under its
+    // own monitor, so holding it keeps a change from landing between the registration and the
+    // scan; a timer that outlives its entity anyway is dropped when it comes due.
+    public void subscribe() {
+        if (!subscribed.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (manager) {
+            manager.addListener(onChange);
+            for (Task t : manager.getPrioritizedTasks()) {
+                reschedule(TaskType.of(t), t);
+            }
+        }
+    }
+
+    public void fireDue() {
+        for (Runnable r : wheel.advance(clock.millis())) {
+            r.run();
+        }
+    }
+
+    public int getPendingTimers() {
+        return wheel.size();
+    }
+
+    @Override
+    public void close() {
+        if (subscribed.compareAndSet(true, false)) {
+            manager.removeListener(onChange);
+        }
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    private void onChange(TaskEvent event) {
+        if (event.getEntityType() == TaskType.EPIC) {
+            return;
+        }
+        if (event.getChange() == ChangeType.DELETED) {
+            cancel(event.getEntityId());
+        } else {
+            reschedule(event.getEntityType(), event.getPayload());
+        }
+    }
+
+    private synchronized void reschedule(TaskType type, Task task) {
+        cancel(task.getId());
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = task.getEndTime();
+        if (start == null) {
+            return;
+        }
+        long now = clock.millis();
+        TimingWheel.Timeout[] slots = new TimingWheel.Timeout[TimerKind.values().length];
+        long startMs = toMillis(start);
+        if (startMs >= now) {
+            slots[TimerKind.STARTED.ordinal()] = schedule(TimerKind.STARTED, type, task.getId(), start, startMs);
+        }
+        if (end != null) {
+            long endMs = toMillis(end);
+            if (endMs >= now) {
+                slots[TimerKind.ENDED.ordinal()] = schedule(TimerKind.ENDED, type, task.getId(), end, endMs);
+            }
+            if (task.getStatus() != Status.DONE) {
+                slots[TimerKind.OVERDUE.ordinal()] = schedule(TimerKind.OVERDUE, type, task.getId(), end, endMs);
+            }
+        }
+        timers.put(task.getId(), slots);
+    }
+
+    private synchronized void cancel(int id) {
+        TimingWheel.Timeout[] slots = timers.remove(id);
+        if (slots == null) {
+            return;
+        }
+        for (TimingWheel.Timeout t : slots) {
+            wheel.cancel(t);
+        }
+    }
+
+    private synchronized void forgetIfFired(int id) {
+        TimingWheel.Timeout[] slots = timers.get(id);
+        if (slots == null) {
+            return;
+        }
+        for (TimingWheel.Timeout t : slots) {
+            if (wheel.isPending(t)) {
+                return;
+            }
+        }
+        timers.remove(id);
+    }
+
+    private TimingWheel.Timeout schedule(TimerKind kind, TaskType type, int id, LocalDateTime at, long atMs) {
+        TimerEvent event = new TimerEvent(kind, type, id, at);
+        return wheel.schedule(atMs, () -> fire(event));
+    }
+
+    private void fire(TimerEvent event) {
+        forgetIfFired(event.getEntityId());
+        if (!exists(event.getEntityType(), event.getEntityId())) {
+            cancel(event.getEntityId());
+            return;
+        }
+        for (TimerListener listener : listeners) {
+            try {
+                listener.onTimer(event);
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Timer listener failed on " + event.getKind() + " "
+                        + event.getEntityType() + " " + event.getEntityId(), e);
+            }
+        }
+    }
+
+    private boolean exists(TaskType type, int id) {
+        return type == TaskType.SUBTASK ? manager.containsSubtask(id) : manager.containsTask(id);
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(clock.getZone()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,291 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Epic;
+import ru.practicum.yandex.tracker.model.Status;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Keeps active work in memory and spills DONE tasks and subtasks that have not changed for
+// `threshold` into an append-only cold file. Lookups by id resolve cold entities lazily through
+// an LRU cache, and they are moved back into memory as soon as they are updated or deleted. Epics
+// always stay in memory; their aggregates count cold subtasks from the cold index alone. The cold
+// file is compacted once more than half of it belongs to entities that have moved back.
+public class TieredTaskManager extends InMemoryTaskManager implements AutoCloseable {
+    private static final Logger LOG = Logger.getLogger(TieredTaskManager.class.getName());
+
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final ColdStore cold;
+    private final Duration threshold;
+    private final Clock clock;
+    private final Instant loadedAt;
+    private final Map<Integer, Instant> lastModified = new HashMap<>();
+
+    public TieredTaskManager(File coldFile, Duration threshold) {
+        this(coldFile, threshold, DEFAULT_CACHE_SIZE, Clock.systemUTC());
+    }
+
+    public TieredTaskManager(File coldFile, Duration threshold, int cacheSize, Clock clock) {
+        this.cold = new ColdStore(coldFile, cacheSize);
+        this.threshold = threshold;
+        this.clock = clock;
+        this.loadedAt = clock.instant();
+        addListener(event -> {
+            if (event.getEntityType() == TaskType.EPIC) {
+                return;
+            }
+            if (event.getChange() == ChangeType.DELETED) {
+                lastModified.remove(event.getEntityId());
+            } else {
+                lastModified.put(event.getEntityId(), clock.instant());
+            }
+        });
+    }
+
+    public synchronized int evictCold() {
+        Instant cutoff = clock.instant().minus(threshold);
+        int moved = 0;
+        for (Task t : super.getAllTasks()) {
+            if (isColdCandidate(t, cutoff)) {
+                ColdStore.Entry entry = spill(t);
+                if (entry != null) {
+                    detachTask(t.getId(), () -> cold.load(t.getId(), entry));
+                    lastModified.remove(t.getId());
+                    moved++;
+                }
+            }
+        }
+        for (Subtask s : super.getAllSubtasks()) {
+            if (isColdCandidate(s, cutoff)) {
+                ColdStore.Entry entry = spill(s);
+                if (entry != null) {
+                    detachSubtask(s.getId(), () -> cold.load(s.getId(), entry));
+                    lastModified.remove(s.getId());
+                    moved++;
+                }
+            }
+        }
+        return moved;
+    }
+
+    // An entity that cannot be written stays hot, and the rest of the pass goes on.
+    private ColdStore.Entry spill(Task t) {
+        try {
+            return cold.write(t);
+        } catch (ManagerSaveException e) {
+            LOG.log(Level.WARNING, "Keeping " + TaskType.of(t) + " " + t.getId() + " in memory", e);
+            return null;
+        }
+    }
+
+    public synchronized int getColdCount() {
+        return cold.size();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        cold.close();
+    }
+
+    //Task
+
+    @Override
+    public synchronized List<Task> getAllTasks() {
+        List<Task> all = super.getAllTasks();
+        all.addAll(cold.loadAll(TaskType.TASK));
+        return all;
+    }
+
+    @Override
+    public synchronized List<Task> getPrioritizedTasks() {
+        List<Task> list = super.getPrioritizedTasks();
+        if (cold.isEmpty()) {
+            return list;
+        }
+        for (TaskType type : new TaskType[]{TaskType.TASK, TaskType.SUBTASK}) {
+            for (Task t : cold.loadAll(type)) {
+                if (t.getStartTime() != null) {
+                    list.add(t);
+                }
+            }
+        }
+        list.sort(PRIORITY_ORDER);
+        return list;
+    }
+
+    // Cold entities are only in the file, so queries over them fall back to the merged lists.
+    @Override
+    public synchronized TaskPage<Task> queryTasks(TaskQuery query) {
+        return cold.isEmpty() ? super.queryTasks(query) : select(getAllTasks(), query);
+    }
+
+    @Override
+    public synchronized TaskPage<Task> queryPrioritized(TaskQuery query) {
+        return cold.isEmpty() ? super.queryPrioritized(query) : select(getPrioritizedTasks(), query.inPriorityOrder());
+    }
+
+    @Override
+    public synchronized void updateTask(Task task) {
+        rehydrate(task.getId());
+        super.updateTask(task);
+    }
+
+    @Override
+    public synchronized void updateTask(Task task, long expectedVersion) {
+        rehydrate(task.getId());
+        super.updateTask(task, expectedVersion);
+    }
+
+    @Override
+    public synchronized void deleteTaskById(int id) {
+        rehydrate(id);
+        super.deleteTaskById(id);
+    }
+
+    @Override
+    public synchronized void deleteAllTasks() {
+        rehydrateAll(TaskType.TASK);
+        super.deleteAllTasks();
+    }
+
+    //Subtask
+
+    @Override
+    public synchronized List<Subtask> getAllSubtasks() {
+        List<Subtask> all = super.getAllSubtasks();
+        for (Task t : cold.loadAll(TaskType.SUBTASK)) {
+            all.add((Subtask) t);
+        }
+        return all;
+    }
+
+    @Override
+    public synchronized TaskPage<Subtask> querySubtasks(TaskQuery query) {
+        return cold.isEmpty() ? super.querySubtasks(query) : select(getAllSubtasks(), query);
+    }
+
+    @Override
+    public synchronized void updateSubtask(Subtask subtask) {
+        rehydrate(subtask.getId());
+        super.updateSubtask(subtask);
+    }
+
+    @Override
+    public synchronized void updateSubtask(Subtask subtask, long expectedVersion) {
+        rehydrate(subtask.getId());
+        super.updateSubtask(subtask, expectedVersion);
+    }
+
+    @Override
+    public synchronized void deleteSubtaskById(int id) {
+        rehydrate(id);
+        super.deleteSubtaskById(id);
+    }
+
+    @Override
+    public synchronized void deleteAllSubtasks() {
+        rehydrateAll(TaskType.SUBTASK);
+        super.deleteAllSubtasks();
+    }
+
+    //Epic
+
+    @Override
+    public synchronized void deleteAllEpics() {
+        rehydrateAll(TaskType.SUBTASK);
+        super.deleteAllEpics();
+    }
+
+    @Override
+    public synchronized void deleteEpicById(int id) {
+        for (int sid : subtaskIdsOf(id)) {
+            rehydrate(sid);
+        }
+        super.deleteEpicById(id);
+    }
+
+    @Override
+    public synchronized List<Subtask> getSubtasksByEpic(int epicId) {
+        List<Subtask> hot = super.getSubtasksByEpic(epicId);
+        List<Integer> ids = subtaskIdsOf(epicId);
+        if (hot.size() == ids.size()) {
+            return hot;
+        }
+        Map<Integer, Subtask> byId = new HashMap<>();
+        for (Subtask s : hot) {
+            byId.put(s.getId(), s);
+        }
+        List<Subtask> list = new ArrayList<>(ids.size());
+        for (int sid : ids) {
+            Subtask s = byId.get(sid);
+            if (s == null) {
+                s = (Subtask) cold.load(sid, TaskType.SUBTASK);
+            }
+            if (s != null) {
+                list.add(s);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    void collectDetachedSubtasks(Epic epic, EpicAggregate aggregate) {
+        for (int sid : epic.getSubtaskIds()) {
+            ColdStore.Entry entry = cold.entry(sid);
+            if (entry != null && entry.type == TaskType.SUBTASK) {
+                aggregate.add(Status.DONE, entry.duration(), entry.start(), entry.end());
+            }
+        }
+    }
+
+    @Override
+    boolean overlapsDetached(Task candidate) {
+        LocalDateTime end = candidate.getEndTime();
+        return end != null && cold.overlaps(candidate.getId(), candidate.getStartTime(), end);
+    }
+
+    private boolean isColdCandidate(Task t, Instant cutoff) {
+        if (t.getStatus() != Status.DONE) {
+            return false;
+        }
+        Instant changed = lastModified.getOrDefault(t.getId(), loadedAt);
+        return !changed.isAfter(cutoff);
+    }
+
+    private void rehydrate(int id) {
+        ColdStore.Entry entry = cold.remove(id);
+        if (entry == null) {
+            return;
+        }
+        Task t = cold.read(entry);
+        if (t instanceof Subtask) {
+            attachSubtask((Subtask) t);
+        } else {
+            attachTask(t);
+        }
+        lastModified.put(id, clock.instant());
+        if (cold.needsCompaction()) {
+            cold.compact();
+        }
+    }
+
+    private void rehydrateAll(TaskType type) {
+        for (int id : cold.ids(type)) {
+            rehydrate(id);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.time.LocalDateTime;
+
+public final class TimerEvent {
+    private final TimerKind kind;
+    private final TaskType entityType;
+    private final int entityId;
+    private final LocalDateTime dueAt;
+
+    public TimerEvent(TimerKind kind, TaskType entityType, int entityId, LocalDateTime dueAt) {
+        this.kind = kind;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.dueAt = dueAt;
+    }
+
+    public TimerKind getKind() {
+        return kind;
+    }
+
+    public TaskType getEntityType() {
+        return entityType;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public LocalDateTime getDueAt() {
+        return dueAt;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.yandex.tracker.manager;
+
+public enum TimerKind {
+    STARTED,
+    ENDED,
+    OVERDUE
+}
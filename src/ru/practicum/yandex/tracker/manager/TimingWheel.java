@@ -0,0 +1,144 @@
+package ru.practicum.yandex.tracker.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hierarchical hashed timing wheel: four levels of 256 slots each. Timers are kept in
+// intrusive doubly linked buckets, so scheduling and cancelling are O(1); a bucket on an
+// upper level is cascaded down when the level below wraps around.
+class TimingWheel {
+    private static final int BITS = 8;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_TICKS = (1L << (BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final long originMillis;
+    private final Timeout[][] wheels = new Timeout[LEVELS][SLOTS];
+    private long currentTick;
+    private int size;
+
+    static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    TimingWheel(long tickMillis, long originMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.originMillis = originMillis;
+    }
+
+    synchronized Timeout schedule(long deadlineMillis, Runnable task) {
+        long ticks = Math.floorDiv(deadlineMillis - originMillis + tickMillis - 1, tickMillis);
+        Timeout t = new Timeout(task, Math.max(ticks, currentTick + 1));
+        place(t);
+        size++;
+        return t;
+    }
+
+    synchronized boolean cancel(Timeout t) {
+        if (t == null || t.level < 0) {
+            return false;
+        }
+        unlink(t);
+        size--;
+        return true;
+    }
+
+    synchronized boolean isPending(Timeout t) {
+        return t != null && t.level >= 0;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    // Moves the wheel up to `nowMillis` and returns the callbacks that became due, in order.
+    synchronized List<Runnable> advance(long nowMillis) {
+        long target = Math.floorDiv(nowMillis - originMillis, tickMillis);
+        List<Runnable> due = new ArrayList<>();
+        while (currentTick < target) {
+            currentTick++;
+            int idx = (int) (currentTick & MASK);
+            if (idx == 0) {
+                cascade(1);
+            }
+            Timeout t = wheels[0][idx];
+            wheels[0][idx] = null;
+            while (t != null) {
+                Timeout next = t.next;
+                t.prev = null;
+                t.next = null;
+                t.level = -1;
+                size--;
+                due.add(t.task);
+                t = next;
+            }
+        }
+        return due;
+    }
+
+    private void cascade(int level) {
+        if (level >= LEVELS) {
+            return;
+        }
+        int idx = (int) ((currentTick >>> (BITS * level)) & MASK);
+        if (idx == 0) {
+            cascade(level + 1);
+        }
+        Timeout t = wheels[level][idx];
+        wheels[level][idx] = null;
+        while (t != null) {
+            Timeout next = t.next;
+            t.prev = null;
+            t.next = null;
+            place(t);
+            t = next;
+        }
+    }
+
+    private void place(Timeout t) {
+        long delta = Math.min(t.deadlineTick - currentTick, MAX_TICKS);
+        long expires = currentTick + delta;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((expires >>> (BITS * level)) & MASK);
+        t.level = level;
+        t.slot = slot;
+        Timeout head = wheels[level][slot];
+        t.next = head;
+        if (head != null) {
+            head.prev = t;
+        }
+        wheels[level][slot] = t;
+    }
+
+    private void unlink(Timeout t) {
+        if (t.prev != null) {
+            t.prev.next = t.next;
+        } else {
+            wheels[t.level][t.slot] = t.next;
+        }
+        if (t.next != null) {
+            t.next.prev = t.prev;
+        }
+        t.prev = null;
+        t.next = null;
+        t.level = -1;
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.yandex.tracker.manager;
+
+public class VersionConflictException extends RuntimeException {
+    private final int id;
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    public VersionConflictException(int id, long expectedVersion, long actualVersion) {
+        super("Entity " + id + " has version " + actualVersion + ", expected " + expectedVersion);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getActualVersion() {
+        return actualVersion;
+    }
+}
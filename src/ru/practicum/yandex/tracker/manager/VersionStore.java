@@ -0,0 +1,141 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Keeps a newest-first chain of frozen entity copies per id. A chain only grows past one
+// element while a snapshot older than the newest version is open; pruning drops everything
+// no open snapshot can see.
+class VersionStore {
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final Map<Integer, Version> heads = new ConcurrentHashMap<>();
+    private final TreeMap<Long, Integer> readers = new TreeMap<>();
+    private final Set<Integer> garbage = new HashSet<>();
+
+    private static final class Version {
+        final long sequence;
+        final Task value;
+        final Supplier<Task> loader;
+        volatile Version older;
+
+        Version(long sequence, Task value, Supplier<Task> loader, Version older) {
+            this.sequence = sequence;
+            this.value = value;
+            this.loader = loader;
+            this.older = older;
+        }
+
+        Task get() {
+            return loader != null ? loader.get() : value;
+        }
+
+        boolean isTombstone() {
+            return value == null && loader == null;
+        }
+    }
+
+    synchronized void record(long sequence, int id, Task value) {
+        push(id, new Version(sequence, value, null, heads.get(id)));
+    }
+
+    // For entities moved out of memory: the version is materialized on demand.
+    synchronized void recordLazy(long sequence, int id, Supplier<Task> loader) {
+        push(id, new Version(sequence, null, loader, heads.get(id)));
+    }
+
+    Task latest(int id) {
+        Version head = heads.get(id);
+        return head == null ? null : head.get();
+    }
+
+    // Like latest(id) != null, without materializing an entity that was moved out of memory.
+    boolean exists(int id) {
+        Version head = heads.get(id);
+        return head != null && !head.isTombstone();
+    }
+
+    Task visible(int id, long sequence) {
+        return resolve(heads.get(id), sequence);
+    }
+
+    <T extends Task> List<T> scan(long sequence, Class<T> kind, Predicate<Task> filter) {
+        List<T> out = new ArrayList<>();
+        for (Version head : heads.values()) {
+            Task value = resolve(head, sequence);
+            if (value != null && filter.test(value)) {
+                out.add(kind.cast(value));
+            }
+        }
+        return out;
+    }
+
+    Cleaner.Cleanable open(Object owner, long sequence) {
+        synchronized (this) {
+            readers.merge(sequence, 1, Integer::sum);
+        }
+        return CLEANER.register(owner, () -> release(sequence));
+    }
+
+    private synchronized void release(long sequence) {
+        readers.computeIfPresent(sequence, (k, n) -> n == 1 ? null : n - 1);
+        for (Integer id : new ArrayList<>(garbage)) {
+            Version head = heads.get(id);
+            if (head == null) {
+                garbage.remove(id);
+            } else {
+                prune(id, head);
+            }
+        }
+    }
+
+    private static Task resolve(Version head, long sequence) {
+        Version v = head;
+        while (v != null && v.sequence > sequence) {
+            v = v.older;
+        }
+        return v == null ? null : v.get();
+    }
+
+    private void push(int id, Version head) {
+        heads.put(id, head);
+        prune(id, head);
+    }
+
+    private void prune(int id, Version head) {
+        long horizon = readers.isEmpty() ? Long.MAX_VALUE : readers.firstKey();
+        Version newer = null;
+        Version keep = head;
+        while (keep != null && keep.sequence > horizon) {
+            newer = keep;
+            keep = keep.older;
+        }
+        if (keep != null) {
+            keep.older = null;
+            if (keep.isTombstone()) {
+                // A tombstone reads the same as a missing chain tail.
+                if (newer == null) {
+                    heads.remove(id);
+                    garbage.remove(id);
+                    return;
+                }
+                newer.older = null;
+            }
+        }
+        if (head.older != null) {
+            garbage.add(id);
+        } else {
+            garbage.remove(id);
+        }
+    }
+}
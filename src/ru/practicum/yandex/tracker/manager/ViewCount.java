@@ -0,0 +1,28 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.TaskType;
+
+public final class ViewCount {
+    private final int id;
+    private final TaskType type;
+    private final long views;
+
+    public ViewCount(int id, TaskType type, long views) {
+        this.id = id;
+        this.type = type;
+        this.views = views;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public TaskType getType() {
+        return type;
+    }
+
+    // An upper-bound estimate: the sketch may over-count, never under-count.
+    public long getViews() {
+        return views;
+    }
+}
@@ -0,0 +1,208 @@
+package ru.practicum.yandex.tracker.manager;
+
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+
+// Approximate view counts over a sliding window, in memory fixed at construction. The window
+// is split into panes; each pane holds a Count-Min sketch for all ids and a fixed set of k
+// heaviest-hitter slots in the spirit of Space-Saving, except that an id takes over the
+// lightest slot only once its Count-Min estimate exceeds that slot's count. A query merges
+// the panes still inside the window and sums the Count-Min estimates of the tracked ids.
+//
+// Recording is lock-free for the common cases: the Count-Min cells are atomic, and an id that
+// is already tracked or too light to take a slot needs nothing else. Only a slot change, and
+// the reset of a pane that has rolled over, lock that one pane. A view that races a reset may
+// land on either side of it, which is within the sketch's tolerance anyway.
+public class ViewFrequencySketch {
+    public static final Duration DEFAULT_WINDOW = Duration.ofHours(1);
+    public static final int DEFAULT_PANES = 6;
+    public static final int DEFAULT_TOP = 64;
+    public static final int DEFAULT_WIDTH = 1024;
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    private final Clock clock;
+    private final long paneMillis;
+    private final Pane[] panes;
+
+    private static final class Counter {
+        final int id;
+        final TaskType type;
+
+        Counter(int id, TaskType type) {
+            this.id = id;
+            this.type = type;
+        }
+    }
+
+    private static final class Pane {
+        final AtomicIntegerArray cms;
+        final int width;
+        final int mask;
+        final int top;
+        final Map<Integer, Counter> counters = new ConcurrentHashMap<>();
+        volatile long epoch = Long.MIN_VALUE;
+        // Estimate of the lightest tracked id when every slot is taken, -1 while one is free.
+        // Tracked estimates only grow, so a stale value is a safe lower bound for the fast path.
+        volatile long floor = -1;
+
+        Pane(int width, int top) {
+            this.cms = new AtomicIntegerArray(DEPTH * width);
+            this.width = width;
+            this.mask = width - 1;
+            this.top = top;
+        }
+
+        synchronized void reset(long epoch) {
+            if (this.epoch == epoch) {
+                return;
+            }
+            for (int i = 0; i < cms.length(); i++) {
+                cms.set(i, 0);
+            }
+            counters.clear();
+            floor = -1;
+            this.epoch = epoch;
+        }
+
+        // The id's Count-Min cells keep its views, but without a slot it is no longer reported.
+        synchronized void forget(int id) {
+            if (counters.remove(id) != null) {
+                floor = -1;
+            }
+        }
+
+        void add(int id, TaskType type, int views) {
+            long estimate = Long.MAX_VALUE;
+            for (int r = 0; r < DEPTH; r++) {
+                estimate = Math.min(estimate, cms.addAndGet(cell(id, r), views));
+            }
+            if (estimate > floor && !counters.containsKey(id)) {
+                claimSlot(id, type, estimate);
+            }
+        }
+
+        private synchronized void claimSlot(int id, TaskType type, long estimate) {
+            if (counters.containsKey(id)) {
+                return;
+            }
+            if (counters.size() < top) {
+                counters.put(id, new Counter(id, type));
+            } else {
+                Counter lightest = lightest();
+                if (estimate <= estimate(lightest.id)) {
+                    floor = estimate(lightest.id);
+                    return;
+                }
+                // The id overtook the lightest tracked one, which gives up its slot.
+                counters.remove(lightest.id);
+                counters.put(id, new Counter(id, type));
+            }
+            if (counters.size() == top) {
+                floor = estimate(lightest().id);
+            }
+        }
+
+        private Counter lightest() {
+            Counter min = null;
+            long minCount = Long.MAX_VALUE;
+            for (Counter c : counters.values()) {
+                long count = estimate(c.id);
+                if (count < minCount || (count == minCount && c.id < min.id)) {
+                    min = c;
+                    minCount = count;
+                }
+            }
+            return min;
+        }
+
+        long estimate(int id) {
+            long min = Long.MAX_VALUE;
+            for (int r = 0; r < DEPTH; r++) {
+                min = Math.min(min, cms.get(cell(id, r)));
+            }
+            return min;
+        }
+
+        private int cell(int id, int row) {
+            int h = id * SEEDS[row];
+            h ^= h >>> 16;
+            return row * width + (h & mask);
+        }
+    }
+
+    public ViewFrequencySketch() {
+        this(DEFAULT_WINDOW, DEFAULT_PANES, DEFAULT_TOP, DEFAULT_WIDTH, Clock.systemUTC());
+    }
+
+    public ViewFrequencySketch(Duration window, int panes, int top, int width, Clock clock) {
+        if (panes <= 0 || top <= 0 || width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Panes and top must be positive, width a power of two");
+        }
+        this.paneMillis = Math.max(1, window.toMillis() / panes);
+        this.clock = clock;
+        this.panes = new Pane[panes];
+        for (int i = 0; i < panes; i++) {
+            this.panes[i] = new Pane(width, top);
+        }
+    }
+
+    public void record(int id, TaskType type, int views) {
+        long epoch = clock.millis() / paneMillis;
+        Pane pane = panes[(int) Math.floorMod(epoch, (long) panes.length)];
+        if (pane.epoch != epoch) {
+            pane.reset(epoch);
+        }
+        pane.add(id, type, views);
+    }
+
+    // Stops reporting a deleted id and frees its slots for others.
+    public void forget(int id) {
+        for (Pane pane : panes) {
+            pane.forget(id);
+        }
+    }
+
+    public List<ViewCount> top(int limit, TaskType type) {
+        return top(limit, type, id -> true);
+    }
+
+    // Most viewed ids inside the window, optionally of one type, that still pass `live`; cost is
+    // O(panes * top). The check catches a view recorded after its id was forgotten.
+    public List<ViewCount> top(int limit, TaskType type, IntPredicate live) {
+        long oldest = clock.millis() / paneMillis - panes.length + 1;
+        Map<Integer, TaskType> candidates = new HashMap<>();
+        for (Pane pane : panes) {
+            if (pane.epoch >= oldest) {
+                for (Counter c : pane.counters.values()) {
+                    if ((type == null || c.type == type) && live.test(c.id)) {
+                        candidates.putIfAbsent(c.id, c.type);
+                    }
+                }
+            }
+        }
+        List<ViewCount> out = new ArrayList<>(candidates.size());
+        for (Map.Entry<Integer, TaskType> e : candidates.entrySet()) {
+            long views = 0;
+            for (Pane pane : panes) {
+                if (pane.epoch >= oldest) {
+                    views += pane.estimate(e.getKey());
+                }
+            }
+            out.add(new ViewCount(e.getKey(), e.getValue(), views));
+        }
+        out.sort(Comparator.comparingLong(ViewCount::getViews).reversed().thenComparingInt(ViewCount::getId));
+        return out.size() > limit ? new ArrayList<>(out.subList(0, limit)) : out;
+    }
+}
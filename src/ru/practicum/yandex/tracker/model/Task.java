@@ -11,6 +11,7 @@ public class Task {
     private Status status;
     private Duration duration;
     private LocalDateTime startTime;
+    private long version;
 
     public Task(int id, String title, String description) {
         this.id = id;
@@ -67,6 +68,14 @@ public class Task {
         this.startTime = startTime;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public LocalDateTime getEndTime() {
         if (startTime == null || duration == null) {
             return null;
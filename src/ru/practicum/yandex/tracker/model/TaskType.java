@@ -3,5 +3,15 @@ package ru.practicum.yandex.tracker.model;
 public enum TaskType {
     TASK,
     SUBTASK,
-    EPIC
+    EPIC;
+
+    public static TaskType of(Task task) {
+        if (task instanceof Epic) {
+            return EPIC;
+        }
+        if (task instanceof Subtask) {
+            return SUBTASK;
+        }
+        return TASK;
+    }
 }
@@ -0,0 +1,116 @@
+package manager;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.manager.AsyncHistoryManager;
+import ru.practicum.yandex.tracker.manager.InMemoryTaskManager;
+import ru.practicum.yandex.tracker.manager.Managers;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncHistoryManagerTest {
+
+    @Test
+    public void viewsAreAppliedInOrderAfterFlush() {
+        try (AsyncHistoryManager hm = new AsyncHistoryManager(Managers.getPartitionedHistory(10, 10))) {
+            hm.add("u1", new Task(1, "A", ""));
+            hm.add("u1", new Task(2, "B", ""));
+            hm.add("u1", new Task(1, "A", ""));
+            hm.add("u2", new Task(3, "C", ""));
+            hm.flush();
+
+            assertEquals(List.of(2, 1), ids(hm.getHistory("u1")));
+            assertEquals(List.of(3), ids(hm.getHistory("u2")));
+
+            hm.remove(1);
+            hm.add("u1", new Task(2, "B", ""));
+            hm.flush();
+            assertEquals(List.of(2), ids(hm.getHistory("u1")), "Удалённая задача не должна оставаться в истории");
+        }
+    }
+
+    @Test
+    public void concurrentProducersDoNotLoseViews() throws InterruptedException {
+        try (AsyncHistoryManager hm = new AsyncHistoryManager(Managers.getDefaultHistory(), 1 << 10, 64, 1)) {
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                int base = p * 1000;
+                Thread t = new Thread(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        hm.add(new Task(base + i, "T", ""));
+                    }
+                });
+                producers.add(t);
+                t.start();
+            }
+            for (Thread t : producers) {
+                t.join();
+            }
+            hm.flush();
+
+            assertEquals(2000 - hm.getDroppedCount(), hm.getHistory().size());
+        }
+    }
+
+    @Test
+    public void managerRecordsViewsThroughRing() {
+        try (AsyncHistoryManager hm = new AsyncHistoryManager(Managers.getDefaultHistory())) {
+            InMemoryTaskManager m = new InMemoryTaskManager(hm);
+            int id = m.createTask(new Task(0, "T", ""));
+            m.getTaskById(id);
+            hm.flush();
+            assertEquals(1, m.getHistory().size());
+
+            m.deleteTaskById(id);
+            hm.flush();
+            assertTrue(m.getHistory().isEmpty());
+        }
+    }
+
+    @Test
+    public void evictedViewersAreNotPublished() {
+        try (AsyncHistoryManager hm = new AsyncHistoryManager(Managers.getPartitionedHistory(10, 2))) {
+            hm.add("a", new Task(1, "A", ""));
+            hm.flush();
+            hm.add("b", new Task(1, "A", ""));
+            hm.flush();
+            hm.add("c", new Task(2, "B", ""));
+            hm.flush();
+
+            assertTrue(hm.getHistory("a").isEmpty(), "Вытесненный зритель не должен видеть старый снимок");
+            assertEquals(List.of(1), ids(hm.getHistory("b")));
+            assertEquals(List.of(2), ids(hm.getHistory("c")));
+
+            hm.remove(1);
+            hm.flush();
+            assertTrue(hm.getHistory("b").isEmpty());
+            assertEquals(List.of(2), ids(hm.getHistory("c")));
+        }
+    }
+
+    @Test
+    public void removeAfterCloseDoesNotBlock() {
+        AsyncHistoryManager hm = new AsyncHistoryManager(Managers.getPartitionedHistory(10, 10), 4, 4, 1);
+        hm.add("u1", new Task(1, "A", ""));
+        hm.add("u1", new Task(2, "B", ""));
+        hm.flush();
+        hm.close();
+        for (int i = 0; i < 8; i++) {
+            hm.add("u1", new Task(10 + i, "T", ""));
+        }
+
+        hm.remove(1);
+        assertEquals(List.of(2), ids(hm.getHistory("u1")), "Удаление после закрытия применяется сразу");
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        List<Integer> ids = new ArrayList<>();
+        for (Task t : tasks) {
+            ids.add(t.getId());
+        }
+        return ids;
+    }
+}
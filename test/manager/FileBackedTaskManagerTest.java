@@ -126,6 +126,17 @@ public class FileBackedTaskManagerTest extends TaskManagerTestBase<FileBackedTas
         assertEquals(2, subs.size(), "Должно восстановиться 2 сабтаска для эпика");
     }
 
+    @Test
+    public void saveAndLoad_keepsVersions() throws IOException {
+        File file = tempFile();
+        FileBackedTaskManager m = new FileBackedTaskManager(file);
+        int id = m.createTask(new Task(0, "A", ""));
+        m.updateTask(new Task(id, "B", ""), 1);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+        assertEquals(2, loaded.getTaskById(id).getVersion());
+    }
+
     @Test
     public void saveToInvalidPath_shouldThrowManagerSaveException() throws Exception {
         File dir = Files.createTempDirectory("kanban-dir").toFile();
@@ -145,4 +156,63 @@ public class FileBackedTaskManagerTest extends TaskManagerTestBase<FileBackedTas
 
         assertThrows(ManagerSaveException.class, () -> FileBackedTaskManager.loadFromFile(file));
     }
+
+    @Test
+    public void history_survivesReload_inViewOrder() throws IOException {
+        File file = tempFile();
+        FileBackedTaskManager m = new FileBackedTaskManager(file);
+        int a = m.createTask(new Task(0, "A", ""));
+        int e = m.createEpic(new Epic(0, "E", ""));
+        int s = m.createSubtask(new Subtask(0, "S", "", e));
+        int gone = m.createTask(new Task(0, "Gone", ""));
+
+        m.getTaskById(a);
+        m.getSubtaskById(s);
+        m.getTaskById(gone);
+        m.getEpicById(e);
+        m.getTaskById(a);
+        m.deleteTaskById(gone);
+
+        FileBackedTaskManager loaded = FileBackedTaskManager.loadFromFile(file);
+        List<Task> history = loaded.getHistory();
+        assertEquals(3, history.size(), "Удалённая задача не должна вернуться в историю");
+        assertEquals(s, history.get(0).getId());
+        assertEquals(e, history.get(1).getId());
+        assertEquals(a, history.get(2).getId());
+    }
+
+    @Test
+    public void historyLog_isCompacted() throws IOException {
+        File file = tempFile();
+        FileBackedTaskManager m = new FileBackedTaskManager(file);
+        int a = m.createTask(new Task(0, "A", ""));
+        int b = m.createTask(new Task(0, "B", ""));
+        for (int i = 0; i < 5_000; i++) {
+            m.getTaskById(i % 2 == 0 ? a : b);
+        }
+
+        m.flushHistory();
+
+        File log = new File(file.getPath() + ".history");
+        log.deleteOnExit();
+        assertTrue(log.length() <= 4L * 1025, "Журнал истории должен сжиматься");
+        List<Task> history = FileBackedTaskManager.loadFromFile(file).getHistory();
+        assertEquals(List.of(a, b), history.stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void bufferedViews_arePersistedOnClose() throws IOException {
+        File file = tempFile();
+        FileBackedTaskManager m = new FileBackedTaskManager(file);
+        int a = m.createTask(new Task(0, "A", ""));
+        int b = m.createTask(new Task(0, "B", ""));
+        m.getTaskById(b);
+        m.getTaskById(a);
+        m.close();
+
+        File log = new File(file.getPath() + ".history");
+        log.deleteOnExit();
+        List<Task> history = FileBackedTaskManager.loadFromFile(file).getHistory();
+        assertEquals(List.of(b, a), history.stream().map(Task::getId).toList());
+    }
 }
@@ -3,12 +3,17 @@ package manager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.practicum.yandex.tracker.manager.HistoryManager;
+import ru.practicum.yandex.tracker.manager.HistoryOrder;
+import ru.practicum.yandex.tracker.manager.HistoryPage;
 import ru.practicum.yandex.tracker.manager.Managers;
 import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.Status;
 
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class InMemoryHistoryManagerTest {
@@ -58,6 +63,23 @@ public class InMemoryHistoryManagerTest {
         assertEquals(42, history.get(0).getId());
     }
 
+    @Test
+    public void standaloneHistory_returnsTasksAsViewed() {
+        Task t = new Task(7, "Отчёт", "Собрать цифры");
+        t.setStatus(Status.IN_PROGRESS);
+        historyManager.add(t);
+        t.setTitle("Изменено после просмотра");
+
+        Task viewed = historyManager.getHistory().get(0);
+        assertEquals("Отчёт", viewed.getTitle(), "История без менеджера хранит задачу как её просмотрели");
+        assertEquals("Собрать цифры", viewed.getDescription());
+        assertEquals(Status.IN_PROGRESS, viewed.getStatus());
+
+        viewed.setTitle("Чужая правка");
+        assertEquals("Отчёт", historyManager.getHistoryPage(HistoryOrder.NEWEST_FIRST, 1, null)
+                .getItems().get(0).getTitle());
+    }
+
     @Test
     public void emptyHistory_returnsEmptyList() {
         assertTrue(historyManager.getHistory().isEmpty());
@@ -76,6 +98,64 @@ public class InMemoryHistoryManagerTest {
         assertEquals(12, h.get(11).getId());
     }
 
+    @Test
+    public void boundedHistory_evictsLeastRecentlyViewed() {
+        HistoryManager hm = Managers.getDefaultHistory(3);
+        for (int i = 1; i <= 4; i++) {
+            hm.add(new Task(i, "T" + i, ""));
+        }
+        hm.add(new Task(2, "T2", ""));
+        hm.add(new Task(5, "T5", ""));
+
+        List<Task> h = hm.getHistory();
+        assertEquals(3, h.size());
+        assertEquals(4, h.get(0).getId());
+        assertEquals(2, h.get(1).getId(), "Повторный просмотр переносит задачу в конец");
+        assertEquals(5, h.get(2).getId());
+        assertEquals(2, hm.getEvictionCount());
+    }
+
+    @Test
+    public void pages_walkNewestFirst_andSurviveReviews() {
+        for (int i = 1; i <= 5; i++) {
+            historyManager.add(new Task(i, "T" + i, ""));
+        }
+
+        HistoryPage first = historyManager.getHistoryPage(HistoryOrder.NEWEST_FIRST, 2, null);
+        assertEquals(5, first.getItems().get(0).getId());
+        assertEquals(4, first.getItems().get(1).getId());
+
+        // Viewing the cursor entry again moves it to the tail; paging continues after it anyway.
+        historyManager.add(new Task(4, "T4", ""));
+        HistoryPage second = historyManager.getHistoryPage(HistoryOrder.NEWEST_FIRST, 2, first.getNextCursor());
+        assertEquals(3, second.getItems().get(0).getId());
+        assertEquals(2, second.getItems().get(1).getId());
+
+        HistoryPage last = historyManager.getHistoryPage(HistoryOrder.NEWEST_FIRST, 2, second.getNextCursor());
+        assertEquals(1, last.getItems().size());
+        assertNull(last.getNextCursor(), "На последней странице курсора быть не должно");
+
+        HistoryPage oldest = historyManager.getHistoryPage(HistoryOrder.OLDEST_FIRST, 3, null);
+        assertEquals(List.of(1, 2, 3), oldest.getItems().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void pages_resolveOutsideLock_andSkipVanishedEntries() {
+        for (int i = 1; i <= 5; i++) {
+            historyManager.add(new Task(i, "T" + i, ""));
+        }
+        historyManager.bind((id, type) -> {
+            assertFalse(Thread.holdsLock(historyManager), "Задачи не должны загружаться под блокировкой");
+            return id == 4 || id == 3 ? null : new Task(id, "T" + id, "");
+        });
+
+        HistoryPage page = historyManager.getHistoryPage(HistoryOrder.NEWEST_FIRST, 2, null);
+        assertEquals(List.of(5, 2), page.getItems().stream().map(Task::getId).toList());
+        HistoryPage rest = historyManager.getHistoryPage(HistoryOrder.NEWEST_FIRST, 2, page.getNextCursor());
+        assertEquals(List.of(1), rest.getItems().stream().map(Task::getId).toList());
+        assertNull(rest.getNextCursor());
+    }
+
     @Test
     public void remove_head_middle_tail() {
         HistoryManager hm = Managers.getDefaultHistory();
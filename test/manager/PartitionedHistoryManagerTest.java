@@ -0,0 +1,117 @@
+package manager;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.manager.HistoryOrder;
+import ru.practicum.yandex.tracker.manager.PartitionedHistoryManager;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PartitionedHistoryManagerTest {
+
+    @Test
+    public void viewersHaveSeparateBoundedHistories() {
+        PartitionedHistoryManager hm = new PartitionedHistoryManager(2, 10);
+        hm.add("u1", new Task(1, "A", ""));
+        hm.add("u1", new Task(2, "B", ""));
+        hm.add("u1", new Task(3, "C", ""));
+        hm.add("u2", new Task(1, "A", ""));
+
+        assertEquals(2, hm.getHistory("u1").size());
+        assertEquals(2, hm.getHistory("u1").get(0).getId());
+        assertEquals(1, hm.getHistory("u2").size());
+        assertTrue(hm.getHistory().isEmpty(), "Общая история не должна видеть чужие просмотры");
+        assertEquals(1, hm.getEvictionCount());
+
+        hm.remove(1);
+        assertTrue(hm.getHistory("u2").isEmpty());
+    }
+
+    @Test
+    public void idleViewersAreDroppedWhenOverLimit() {
+        PartitionedHistoryManager hm = new PartitionedHistoryManager(10, 2);
+        hm.add("a", new Task(1, "A", ""));
+        hm.add("b", new Task(1, "A", ""));
+        hm.add("c", new Task(1, "A", ""));
+
+        assertEquals(2, hm.getPartitionCount());
+        assertTrue(hm.getHistory("a").isEmpty());
+    }
+
+    @Test
+    public void manyViewers_evictLeastRecentlyActiveAndKeepRecentlyRead() {
+        PartitionedHistoryManager hm = new PartitionedHistoryManager(10, 100);
+        List<String> evicted = new ArrayList<>();
+        hm.setViewerEvictionListener(evicted::add);
+        hm.add("keep", new Task(1, "A", ""));
+        for (int i = 0; i < 10_000; i++) {
+            hm.add("s" + i, new Task(1, "A", ""));
+            // Reading counts as activity, so this viewer is never the least recently active.
+            hm.getEntries("keep");
+        }
+
+        assertEquals(100, hm.getPartitionCount());
+        assertEquals(9_901, evicted.size());
+        assertEquals("s0", evicted.get(0), "Первым вытесняется самый давний зритель");
+        assertEquals(1, hm.getHistory("keep").size());
+        assertTrue(hm.getHistory("s9900").isEmpty());
+        assertEquals(1, hm.getHistory("s9901").size());
+    }
+
+    @Test
+    public void concurrentViewersDoNotLoseEntries() throws Exception {
+        PartitionedHistoryManager hm = new PartitionedHistoryManager(1000, 100);
+        List<Thread> threads = new ArrayList<>();
+        for (int v = 0; v < 8; v++) {
+            String viewer = "v" + v;
+            Thread t = new Thread(() -> {
+                for (int i = 1; i <= 500; i++) {
+                    hm.add(viewer, new Task(i, "T", ""));
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int v = 0; v < 8; v++) {
+            assertEquals(500, hm.getHistory("v" + v).size());
+        }
+    }
+
+    @Test
+    public void pageResolution_doesNotBlockViewsOnSameStripe() throws Exception {
+        PartitionedHistoryManager hm = new PartitionedHistoryManager(10, 10, 1);
+        hm.add("u1", new Task(1, "A", ""));
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        hm.bind((id, type) -> {
+            resolving.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Task(id, "T" + id, "");
+        });
+
+        Thread reader = new Thread(() -> hm.getHistoryPage("u1", HistoryOrder.NEWEST_FIRST, 5, null));
+        reader.start();
+        assertTrue(resolving.await(5, TimeUnit.SECONDS));
+
+        Thread writer = new Thread(() -> hm.add("u2", new Task(2, "B", "")));
+        writer.start();
+        writer.join(2_000);
+        boolean added = !writer.isAlive();
+        release.countDown();
+        reader.join();
+        writer.join();
+        assertTrue(added, "Просмотр не должен ждать загрузки задач для страницы истории");
+    }
+}
@@ -0,0 +1,123 @@
+package manager;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.manager.ChangeSet;
+import ru.practicum.yandex.tracker.manager.ChangeType;
+import ru.practicum.yandex.tracker.manager.InMemoryTaskManager;
+import ru.practicum.yandex.tracker.manager.TaskEvent;
+import ru.practicum.yandex.tracker.model.Epic;
+import ru.practicum.yandex.tracker.model.Status;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskEventsTest {
+
+    @Test
+    public void mutationsAreEmittedInOrderWithIncreasingSequence() {
+        InMemoryTaskManager m = new InMemoryTaskManager();
+        List<TaskEvent> received = new ArrayList<>();
+        m.addListener(received::add);
+
+        int id = m.createTask(new Task(0, "T", "D"));
+        Task upd = new Task(id, "T2", "D");
+        m.updateTask(upd);
+        m.deleteTaskById(id);
+
+        assertEquals(3, received.size());
+        assertEquals(ChangeType.CREATED, received.get(0).getChange());
+        assertEquals(ChangeType.UPDATED, received.get(1).getChange());
+        assertEquals("T2", received.get(1).getPayload().getTitle());
+        assertEquals(ChangeType.DELETED, received.get(2).getChange());
+        assertNull(received.get(2).getPayload());
+        for (int i = 0; i < received.size(); i++) {
+            assertEquals(i + 1, received.get(i).getSequence());
+        }
+        assertEquals(3, m.getLastSequence());
+    }
+
+    @Test
+    public void subtaskChangesEmitEpicRecalculated() {
+        InMemoryTaskManager m = new InMemoryTaskManager();
+        int epicId = m.createEpic(new Epic(0, "E", ""));
+        long start = m.getLastSequence();
+
+        Subtask s = new Subtask(0, "S", "", epicId);
+        s.setStatus(Status.DONE);
+        m.createSubtask(s);
+
+        List<TaskEvent> events = m.getEventsSince(start, 10);
+        assertEquals(2, events.size());
+        assertEquals(ChangeType.CREATED, events.get(0).getChange());
+        assertEquals(TaskType.SUBTASK, events.get(0).getEntityType());
+        assertEquals(ChangeType.EPIC_RECALCULATED, events.get(1).getChange());
+        assertEquals(epicId, events.get(1).getEntityId());
+        assertEquals(Status.DONE, events.get(1).getPayload().getStatus());
+    }
+
+    @Test
+    public void ringBufferKeepsOnlyLatestEvents() {
+        InMemoryTaskManager m = new InMemoryTaskManager(4);
+        for (int i = 0; i < 10; i++) {
+            m.createTask(new Task(0, "T" + i, ""));
+        }
+
+        List<TaskEvent> events = m.getEventsSince(0, 100);
+        assertEquals(4, events.size(), "Старые события должны вытесняться");
+        assertEquals(7, events.get(0).getSequence());
+        assertEquals(10, events.get(3).getSequence());
+        assertEquals(2, m.getEventsSince(8, 100).size());
+    }
+
+    @Test
+    public void changesSince_collapsePerEntity_andSkipShortLived() {
+        InMemoryTaskManager m = new InMemoryTaskManager();
+        int kept = m.createTask(new Task(0, "T1", ""));
+        int gone = m.createTask(new Task(0, "T2", ""));
+        long since = m.getLastSequence();
+
+        m.updateTask(new Task(kept, "T1b", ""));
+        int temp = m.createTask(new Task(0, "Tmp", ""));
+        m.deleteTaskById(temp);
+        m.deleteTaskById(gone);
+        int fresh = m.createTask(new Task(0, "T3", ""));
+        m.updateTask(new Task(fresh, "T3b", ""));
+
+        ChangeSet changes = m.getChangesSince(since, 10);
+        assertFalse(changes.isReset());
+        assertEquals(m.getLastSequence(), changes.getHighWaterMark());
+        List<TaskEvent> list = changes.getChanges();
+        assertEquals(3, list.size(), "Созданная и удалённая в окне задача не попадает в дельту");
+        assertEquals(kept, list.get(0).getEntityId());
+        assertEquals("T1b", list.get(0).getPayload().getTitle());
+        assertEquals(ChangeType.DELETED, list.get(1).getChange());
+        assertEquals(gone, list.get(1).getEntityId());
+        assertEquals(ChangeType.CREATED, list.get(2).getChange());
+        assertEquals("T3b", list.get(2).getPayload().getTitle());
+
+        ChangeSet first = m.getChangesSince(since, 1);
+        assertTrue(first.hasMore());
+        assertEquals(1, first.getChanges().size());
+        ChangeSet rest = m.getChangesSince(first.getHighWaterMark(), 10);
+        assertEquals(List.of(gone, fresh), List.of(rest.getChanges().get(0).getEntityId(),
+                rest.getChanges().get(1).getEntityId()));
+    }
+
+    @Test
+    public void changesSince_resetsWhenLogNoLongerCoversIt() {
+        InMemoryTaskManager m = new InMemoryTaskManager(4);
+        for (int i = 0; i < 10; i++) {
+            m.createTask(new Task(0, "T" + i, ""));
+        }
+
+        assertTrue(m.getChangesSince(2, 10).isReset());
+        assertTrue(m.getChangesSince(99, 10).isReset(), "Номер из прошлого запуска");
+        assertEquals(10, m.getChangesSince(99, 10).getHighWaterMark());
+        assertEquals(2, m.getChangesSince(8, 10).getChanges().size());
+    }
+}
@@ -3,10 +3,16 @@ package manager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.practicum.yandex.tracker.manager.TaskManager;
+import ru.practicum.yandex.tracker.manager.TaskPage;
+import ru.practicum.yandex.tracker.manager.TaskQuery;
+import ru.practicum.yandex.tracker.manager.TaskSort;
+import ru.practicum.yandex.tracker.manager.VersionConflictException;
+import ru.practicum.yandex.tracker.manager.ViewCount;
 import ru.practicum.yandex.tracker.model.Epic;
 import ru.practicum.yandex.tracker.model.Status;
 import ru.practicum.yandex.tracker.model.Subtask;
 import ru.practicum.yandex.tracker.model.Task;
+import ru.practicum.yandex.tracker.model.TaskType;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -135,6 +141,138 @@ public abstract class TaskManagerTestBase<T extends TaskManager> {
         assertThrows(IllegalArgumentException.class, () -> manager.createSubtask(s));
     }
 
+    @Test
+    public void update_incrementsVersion() {
+        Task t = createTask("A");
+        assertEquals(1, t.getVersion());
+
+        Task upd = new Task(t.getId(), "A2", "");
+        manager.updateTask(upd, 1);
+        assertEquals(2, manager.getTaskById(t.getId()).getVersion());
+    }
+
+    @Test
+    public void updateWithStaleVersion_shouldThrow_andKeepOldState() {
+        Task t = createTask("A");
+        manager.updateTask(new Task(t.getId(), "B", ""), t.getVersion());
+
+        Task stale = new Task(t.getId(), "C", "");
+        assertThrows(VersionConflictException.class, () -> manager.updateTask(stale, t.getVersion()));
+        assertEquals("B", manager.getTaskById(t.getId()).getTitle());
+    }
+
+    @Test
+    public void subtaskChange_bumpsEpicVersion() {
+        Epic e = createEpic("E");
+        long before = e.getVersion();
+        createSub(e, "s1", Status.DONE);
+
+        Epic after = manager.getEpicById(e.getId());
+        assertTrue(after.getVersion() > before, "Пересчёт эпика должен увеличивать версию");
+        assertThrows(VersionConflictException.class,
+                () -> manager.updateEpic(new Epic(e.getId(), "X", ""), before));
+    }
+
+    @Test
+    public void peekAndContains_doNotRecordHistory() {
+        int taskId = manager.createTask(new Task(0, "T", ""));
+        int epicId = manager.createEpic(new Epic(0, "E", ""));
+
+        assertTrue(manager.containsTask(taskId));
+        assertFalse(manager.containsEpic(taskId), "Поиск должен учитывать тип сущности");
+        assertEquals("E", manager.peekEpic(epicId).getTitle());
+        assertNull(manager.peekSubtask(epicId));
+        assertTrue(manager.getHistory().isEmpty(), "peek не должен попадать в историю");
+    }
+
+    @Test
+    public void peek_returnsCopiesThatDoNotChangeTheStoredVersion() {
+        int taskId = manager.createTask(new Task(0, "T", ""));
+        int epicId = manager.createEpic(new Epic(0, "E", ""));
+        int subId = manager.createSubtask(new Subtask(0, "S", "", epicId));
+
+        manager.peekTask(taskId).setTitle("X");
+        manager.peekEpic(epicId).setDescription("X");
+        manager.peekSubtask(subId).setStatus(Status.DONE);
+
+        assertEquals("T", manager.peekTask(taskId).getTitle(), "peek должен возвращать копию");
+        assertEquals("", manager.getEpicById(epicId).getDescription());
+        assertEquals(Status.NEW, manager.getSubtaskById(subId).getStatus());
+    }
+
+    @Test
+    public void topViewed_dropsDeletedTasks() {
+        int kept = manager.createTask(new Task(0, "K", ""));
+        int deleted = manager.createTask(new Task(0, "D", ""));
+        for (int i = 0; i < 3; i++) {
+            manager.getTaskById(deleted);
+        }
+        manager.getTaskById(kept);
+
+        manager.deleteTaskById(deleted);
+        assertEquals(List.of(kept), manager.getTopViewed(10, null).stream().map(ViewCount::getId).toList(),
+                "Удалённая задача не должна оставаться в топе просмотров");
+    }
+
+    @Test
+    public void collectionVersions_bumpOnlyForChangedType() {
+        long tasks = manager.getCollectionVersion(TaskType.TASK);
+        long epics = manager.getCollectionVersion(TaskType.EPIC);
+        int taskId = manager.createTask(new Task(0, "T", ""));
+        manager.getTaskById(taskId);
+        assertTrue(manager.getCollectionVersion(TaskType.TASK) > tasks);
+        assertEquals(epics, manager.getCollectionVersion(TaskType.EPIC), "Чтение и чужие типы не меняют версию");
+
+        int epicId = manager.createEpic(new Epic(0, "E", ""));
+        long afterEpic = manager.getCollectionVersion(TaskType.EPIC);
+        manager.createSubtask(new Subtask(0, "S", "", epicId));
+        assertTrue(manager.getCollectionVersion(TaskType.SUBTASK) > 0);
+        assertTrue(manager.getCollectionVersion(TaskType.EPIC) > afterEpic, "Пересчёт эпика меняет его версию");
+    }
+
+    @Test
+    public void history_returnsTypedCurrentEntities() {
+        int epicId = manager.createEpic(new Epic(0, "E", ""));
+        int subId = manager.createSubtask(new Subtask(0, "S", "", epicId));
+        manager.getSubtaskById(subId);
+        manager.getEpicById(epicId);
+
+        Subtask renamed = new Subtask(subId, "S2", "", epicId);
+        manager.updateSubtask(renamed);
+
+        List<Task> history = manager.getHistory();
+        assertTrue(history.get(0) instanceof Subtask, "Сабтаск должен вернуться из истории сабтаском");
+        assertEquals(epicId, ((Subtask) history.get(0)).getEpicId());
+        assertEquals("S2", history.get(0).getTitle());
+        assertTrue(history.get(1) instanceof Epic);
+    }
+
+    @Test
+    public void queryTasks_pagesFiltersAndSorts() {
+        for (int i = 0; i < 7; i++) {
+            Task t = new Task(0, "T" + (6 - i), "");
+            t.setStatus(i % 2 == 0 ? Status.DONE : Status.NEW);
+            t.setStartTime(LocalDateTime.of(2025, 1, 1, 9 + i, 0));
+            t.setDuration(Duration.ofMinutes(30));
+            manager.createTask(t);
+        }
+
+        TaskPage<Task> first = manager.queryTasks(new TaskQuery().status(Status.DONE).limit(3));
+        assertEquals(3, first.getItems().size());
+        TaskPage<Task> rest = manager.queryTasks(new TaskQuery().status(Status.DONE).limit(3)
+                .cursor(first.getNextCursor()));
+        assertEquals(1, rest.getItems().size(), "DONE-задач всего четыре");
+        assertNull(rest.getNextCursor());
+
+        TaskPage<Task> byTitle = manager.queryTasks(new TaskQuery().sort(TaskSort.TITLE, false).limit(2));
+        assertEquals("T0", byTitle.getItems().get(0).getTitle());
+
+        TaskPage<Task> window = manager.queryPrioritized(new TaskQuery()
+                .window(LocalDateTime.of(2025, 1, 1, 10, 15), LocalDateTime.of(2025, 1, 1, 12, 0)).limit(10));
+        assertEquals(2, window.getItems().size(), "В окно попадают задачи на 10:00 и 11:00");
+        assertEquals(LocalDateTime.of(2025, 1, 1, 10, 0), window.getItems().get(0).getStartTime());
+    }
+
     @Test
     public void deletingTask_shouldRemoveItFromHistory() {
         Task t = createTask("T", null, null);
@@ -0,0 +1,57 @@
+package manager;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.manager.InMemoryTaskManager;
+import ru.practicum.yandex.tracker.manager.TaskSnapshot;
+import ru.practicum.yandex.tracker.model.Epic;
+import ru.practicum.yandex.tracker.model.Status;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskSnapshotTest {
+
+    @Test
+    public void snapshotDoesNotSeeLaterWrites() {
+        InMemoryTaskManager m = new InMemoryTaskManager();
+        int id = m.createTask(new Task(0, "A", ""));
+
+        try (TaskSnapshot snap = m.snapshot()) {
+            m.updateTask(new Task(id, "B", ""));
+            m.createTask(new Task(0, "C", ""));
+
+            assertEquals(1, snap.getAllTasks().size());
+            assertEquals("A", snap.getTaskById(id).getTitle());
+            assertEquals(2, m.getAllTasks().size());
+
+            m.deleteTaskById(id);
+            assertNotNull(snap.getTaskById(id), "Удаление не должно быть видно в снимке");
+        }
+
+        try (TaskSnapshot now = m.snapshot()) {
+            assertNull(now.getTaskById(id));
+            assertEquals(1, now.getAllTasks().size());
+        }
+    }
+
+    @Test
+    public void epicAndSubtasksAreConsistentWithinSnapshot() {
+        InMemoryTaskManager m = new InMemoryTaskManager();
+        int epicId = m.createEpic(new Epic(0, "E", ""));
+        Subtask s = new Subtask(0, "S", "", epicId);
+        int sid = m.createSubtask(s);
+
+        try (TaskSnapshot snap = m.snapshot()) {
+            Subtask done = new Subtask(sid, "S", "", epicId);
+            done.setStatus(Status.DONE);
+            m.updateSubtask(done);
+            m.createSubtask(new Subtask(0, "S2", "", epicId));
+
+            assertEquals(Status.NEW, snap.getEpicById(epicId).getStatus());
+            assertEquals(1, snap.getSubtasksByEpic(epicId).size());
+            assertEquals(Status.NEW, snap.getSubtaskById(sid).getStatus());
+            assertEquals(Status.IN_PROGRESS, m.getEpicById(epicId).getStatus());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package manager;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.manager.InMemoryTaskManager;
+import ru.practicum.yandex.tracker.manager.TaskTimerService;
+import ru.practicum.yandex.tracker.manager.TimerEvent;
+import ru.practicum.yandex.tracker.manager.TimerKind;
+import ru.practicum.yandex.tracker.model.Status;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskTimerServiceTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 1, 9, 0);
+
+    private static final class ManualClock extends Clock {
+        private Instant now = T0.toInstant(ZoneOffset.UTC);
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final InMemoryTaskManager manager = new InMemoryTaskManager();
+    private final ManualClock clock = new ManualClock();
+    private final List<TimerEvent> fired = new ArrayList<>();
+
+    private TaskTimerService service() {
+        TaskTimerService s = new TaskTimerService(manager, Duration.ofSeconds(1), clock);
+        s.addListener(fired::add);
+        s.subscribe();
+        return s;
+    }
+
+    private int createTask(LocalDateTime start, int minutes) {
+        Task t = new Task(0, "T", "");
+        t.setStartTime(start);
+        t.setDuration(Duration.ofMinutes(minutes));
+        return manager.createTask(t);
+    }
+
+    @Test
+    public void taskDeletedDuringSubscribe_doesNotFire() {
+        InMemoryTaskManager racing = new InMemoryTaskManager() {
+            @Override
+            public List<Task> getPrioritizedTasks() {
+                List<Task> snapshot = super.getPrioritizedTasks();
+                // As if another thread deleted it after the listener went in but before the scan.
+                deleteTaskById(snapshot.get(0).getId());
+                return snapshot;
+            }
+        };
+        Task t = new Task(0, "T", "");
+        t.setStartTime(T0.plusMinutes(10));
+        t.setDuration(Duration.ofMinutes(30));
+        racing.createTask(t);
+        TaskTimerService s = new TaskTimerService(racing, Duration.ofSeconds(1), clock);
+        s.addListener(fired::add);
+        s.subscribe();
+
+        clock.advance(Duration.ofHours(1));
+        s.fireDue();
+        assertTrue(fired.isEmpty(), "Таймер удалённой задачи не должен срабатывать");
+        assertEquals(0, s.getPendingTimers());
+    }
+
+    @Test
+    public void firesStartEndAndOverdue() {
+        TaskTimerService s = service();
+        int id = createTask(T0.plusMinutes(10), 30);
+
+        clock.advance(Duration.ofMinutes(10));
+        s.fireDue();
+        assertEquals(1, fired.size());
+        assertEquals(TimerKind.STARTED, fired.get(0).getKind());
+        assertEquals(id, fired.get(0).getEntityId());
+
+        clock.advance(Duration.ofMinutes(30));
+        s.fireDue();
+        assertEquals(3, fired.size());
+        assertTrue(fired.stream().anyMatch(e -> e.getKind() == TimerKind.ENDED));
+        assertTrue(fired.stream().anyMatch(e -> e.getKind() == TimerKind.OVERDUE));
+        assertEquals(0, s.getPendingTimers());
+    }
+
+    @Test
+    public void updateReschedulesAndDoneCancelsOverdue() {
+        TaskTimerService s = service();
+        int id = createTask(T0.plusMinutes(10), 30);
+
+        Task moved = new Task(id, "T", "");
+        moved.setStartTime(T0.plusHours(5));
+        moved.setDuration(Duration.ofMinutes(30));
+        moved.setStatus(Status.DONE);
+        manager.updateTask(moved);
+
+        clock.advance(Duration.ofHours(1));
+        s.fireDue();
+        assertTrue(fired.isEmpty(), "Старые таймеры должны быть отменены");
+
+        clock.advance(Duration.ofHours(5));
+        s.fireDue();
+        assertEquals(2, fired.size());
+        assertTrue(fired.stream().noneMatch(e -> e.getKind() == TimerKind.OVERDUE));
+    }
+
+    @Test
+    public void deleteCancelsTimers_andExistingTasksAreScheduledOnSubscribe() {
+        int id = createTask(T0.plusDays(30), 60);
+        TaskTimerService s = service();
+        assertEquals(3, s.getPendingTimers());
+
+        manager.deleteTaskById(id);
+        assertEquals(0, s.getPendingTimers());
+        clock.advance(Duration.ofDays(31));
+        s.fireDue();
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    public void repeatedSubscribeRegistersOnce() {
+        TaskTimerService s = service();
+        s.subscribe();
+        s.close();
+
+        createTask(T0.plusMinutes(10), 30);
+        assertEquals(0, s.getPendingTimers(), "После close сервис не должен следить за изменениями");
+    }
+}
@@ -0,0 +1,168 @@
+package manager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.manager.TaskSnapshot;
+import ru.practicum.yandex.tracker.manager.TieredTaskManager;
+import ru.practicum.yandex.tracker.model.Epic;
+import ru.practicum.yandex.tracker.model.Status;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TieredTaskManagerTest {
+    private TieredTaskManager manager;
+    private File coldFile;
+
+    private TieredTaskManager create(Duration threshold) throws IOException {
+        File f = File.createTempFile("kanban-cold-", ".bin");
+        f.deleteOnExit();
+        coldFile = f;
+        manager = new TieredTaskManager(f, threshold, 2, Clock.systemUTC());
+        return manager;
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        manager.close();
+    }
+
+    private static Task doneTask(String title) {
+        Task t = new Task(0, title, "D");
+        t.setStatus(Status.DONE);
+        return t;
+    }
+
+    @Test
+    public void doneTasksMoveToColdAndLoadBackLazily() throws IOException {
+        TieredTaskManager m = create(Duration.ZERO);
+        int done = m.createTask(doneTask("Done"));
+        int active = m.createTask(new Task(0, "Active", ""));
+
+        assertEquals(1, m.evictCold());
+        assertEquals(1, m.getColdCount());
+
+        Task loaded = m.getTaskById(done);
+        assertNotNull(loaded);
+        assertEquals("Done", loaded.getTitle());
+        assertEquals(Status.DONE, loaded.getStatus());
+        assertEquals(2, m.getAllTasks().size());
+        assertNotNull(m.getTaskById(active));
+    }
+
+    @Test
+    public void recentlyChangedTasksStayHot() throws IOException {
+        TieredTaskManager m = create(Duration.ofHours(1));
+        m.createTask(doneTask("Done"));
+
+        assertEquals(0, m.evictCold());
+    }
+
+    @Test
+    public void epicAggregatesCountColdSubtasks() throws IOException {
+        TieredTaskManager m = create(Duration.ZERO);
+        int epicId = m.createEpic(new Epic(0, "E", ""));
+        Subtask old = new Subtask(0, "old", "", epicId);
+        old.setStatus(Status.DONE);
+        old.setStartTime(LocalDateTime.of(2025, 1, 1, 9, 0));
+        old.setDuration(Duration.ofMinutes(30));
+        m.createSubtask(old);
+        m.evictCold();
+
+        m.createSubtask(new Subtask(0, "new", "", epicId));
+
+        Epic e = m.getEpicById(epicId);
+        assertEquals(Status.IN_PROGRESS, e.getStatus(), "Холодная DONE-подзадача должна учитываться");
+        assertEquals(Duration.ofMinutes(30), e.getDuration());
+        assertEquals(LocalDateTime.of(2025, 1, 1, 9, 0), e.getStartTime());
+        assertEquals(2, m.getSubtasksByEpic(epicId).size());
+    }
+
+    @Test
+    public void updatingColdTaskBringsItBack() throws IOException {
+        TieredTaskManager m = create(Duration.ZERO);
+        int id = m.createTask(doneTask("Done"));
+        m.evictCold();
+
+        try (TaskSnapshot snap = m.snapshot()) {
+            Task upd = new Task(id, "Reopened", "");
+            m.updateTask(upd, 1);
+
+            assertEquals(0, m.getColdCount());
+            assertEquals("Reopened", m.getTaskById(id).getTitle());
+            assertEquals(2, m.getTaskById(id).getVersion());
+            assertEquals("Done", snap.getTaskById(id).getTitle());
+        }
+
+        m.deleteTaskById(id);
+        assertNull(m.getTaskById(id));
+    }
+
+    @Test
+    public void coldTimeWindowsBlockOverlaps() throws IOException {
+        TieredTaskManager m = create(Duration.ZERO);
+        Task old = doneTask("Old");
+        old.setStartTime(LocalDateTime.of(2025, 1, 1, 9, 0));
+        old.setDuration(Duration.ofMinutes(60));
+        m.createTask(old);
+        m.evictCold();
+
+        Task clash = new Task(0, "Clash", "");
+        clash.setStartTime(LocalDateTime.of(2025, 1, 1, 9, 30));
+        clash.setDuration(Duration.ofMinutes(15));
+        assertThrows(IllegalArgumentException.class, () -> m.createTask(clash),
+                "Пересечение с холодной задачей должно отклоняться");
+
+        Task after = new Task(0, "After", "");
+        after.setStartTime(LocalDateTime.of(2025, 1, 1, 10, 0));
+        after.setDuration(Duration.ofMinutes(15));
+        m.createTask(after);
+        assertEquals(2, m.getAllTasks().size());
+    }
+
+    @Test
+    public void coldFileIsCompactedOnceMostlyDead() throws IOException {
+        TieredTaskManager m = create(Duration.ZERO);
+        String padding = "x".repeat(1024);
+        int[] ids = new int[150];
+        for (int i = 0; i < ids.length; i++) {
+            Task t = doneTask("T" + i);
+            t.setDescription(padding);
+            ids[i] = m.createTask(t);
+        }
+        m.evictCold();
+        long full = coldFile.length();
+
+        try (TaskSnapshot snap = m.snapshot()) {
+            for (int i = 1; i < ids.length; i++) {
+                m.deleteTaskById(ids[i]);
+            }
+            assertTrue(coldFile.length() < full / 2, "Мёртвые записи должны уходить при уплотнении");
+            assertEquals("T1", snap.getTaskById(ids[1]).getTitle(), "Снимок видит удалённую задачу");
+        }
+        assertEquals(1, m.getColdCount());
+        assertEquals("T0", m.getTaskById(ids[0]).getTitle());
+        assertEquals(padding, m.getTaskById(ids[0]).getDescription());
+    }
+
+    @Test
+    public void descriptionsOver64KbAreEvictedAndRestored() throws IOException {
+        TieredTaskManager m = create(Duration.ZERO);
+        String longText = "я".repeat(70_000);
+        Task big = doneTask("Big");
+        big.setDescription(longText);
+        int bigId = m.createTask(big);
+        int small = m.createTask(doneTask("Small"));
+
+        assertEquals(2, m.evictCold());
+        assertEquals(longText, m.getTaskById(bigId).getDescription());
+        assertEquals("Small", m.getTaskById(small).getTitle());
+    }
+}
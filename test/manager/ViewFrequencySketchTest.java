@@ -0,0 +1,115 @@
+package manager;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.manager.ViewCount;
+import ru.practicum.yandex.tracker.manager.ViewFrequencySketch;
+import ru.practicum.yandex.tracker.model.TaskType;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ViewFrequencySketchTest {
+
+    private static final class ManualClock extends Clock {
+        long millis;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    @Test
+    public void heavyHittersSurviveManyRareIds() {
+        ManualClock clock = new ManualClock();
+        ViewFrequencySketch sketch = new ViewFrequencySketch(Duration.ofMinutes(6), 6, 16, 1024, clock);
+        for (int i = 0; i < 50_000; i++) {
+            sketch.record(1_000 + i, TaskType.TASK, 1);
+            if (i % 10 == 0) {
+                sketch.record(1, TaskType.EPIC, 1);
+            }
+            if (i % 20 == 0) {
+                sketch.record(2, TaskType.TASK, 1);
+            }
+        }
+
+        List<ViewCount> top = sketch.top(2, null);
+        assertEquals(1, top.get(0).getId());
+        assertEquals(2, top.get(1).getId());
+        assertTrue(top.get(0).getViews() >= 5_000, "Оценка не может быть меньше реального числа просмотров");
+        assertEquals(TaskType.EPIC, top.get(0).getType());
+        assertEquals(2, sketch.top(1, TaskType.TASK).get(0).getId());
+    }
+
+    @Test
+    public void forgottenIdIsNotReported_andFreesItsSlot() {
+        ManualClock clock = new ManualClock();
+        ViewFrequencySketch sketch = new ViewFrequencySketch(Duration.ofMinutes(6), 6, 2, 1024, clock);
+        sketch.record(1, TaskType.TASK, 10);
+        sketch.record(2, TaskType.TASK, 5);
+        sketch.forget(1);
+        sketch.record(3, TaskType.TASK, 1);
+
+        List<ViewCount> top = sketch.top(5, null);
+        assertEquals(List.of(2, 3), top.stream().map(ViewCount::getId).toList(),
+                "Удалённая задача не должна попадать в топ");
+        assertTrue(sketch.top(5, null, id -> id != 3).stream().noneMatch(c -> c.getId() == 3));
+    }
+
+    @Test
+    public void viewsOutsideWindowExpire() {
+        ManualClock clock = new ManualClock();
+        ViewFrequencySketch sketch = new ViewFrequencySketch(Duration.ofMinutes(6), 6, 16, 1024, clock);
+        sketch.record(1, TaskType.TASK, 10);
+        clock.millis = Duration.ofMinutes(3).toMillis();
+        sketch.record(2, TaskType.TASK, 3);
+        assertEquals(1, sketch.top(1, null).get(0).getId());
+
+        clock.millis = Duration.ofMinutes(7).toMillis();
+        List<ViewCount> top = sketch.top(5, null);
+        assertEquals(1, top.size(), "Просмотры вне окна не должны учитываться");
+        assertEquals(2, top.get(0).getId());
+        assertEquals(3, top.get(0).getViews());
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        ViewFrequencySketch sketch = new ViewFrequencySketch(Duration.ofHours(1), 1, 16, 1024, new ManualClock());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int base = t * 10_000;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    sketch.record(7, TaskType.TASK, 1);
+                    sketch.record(100_000 + base + i, TaskType.TASK, 1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        ViewCount top = sketch.top(1, null).get(0);
+        assertEquals(7, top.getId());
+        assertTrue(top.getViews() >= 80_000, "Параллельные просмотры не должны теряться");
+    }
+}
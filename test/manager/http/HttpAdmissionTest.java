@@ -0,0 +1,144 @@
+package manager.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.http.AdmissionFilter;
+import ru.practicum.yandex.tracker.http.CompressionFilter;
+import ru.practicum.yandex.tracker.http.ExecutionMode;
+import ru.practicum.yandex.tracker.http.HttpTaskServer;
+import ru.practicum.yandex.tracker.manager.InMemoryTaskManager;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpAdmissionTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private HttpTaskServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    private HttpRequest post(String json) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:8080/tasks"))
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create("http://localhost:8080" + path)).GET().build();
+        return client.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void busyWrites_areRefused_whileReadsStillPass() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryTaskManager manager = blockingCreates(entered, release);
+        server = new HttpTaskServer(manager, 8080, 64, ExecutionMode.POOL, 8, new CompressionFilter(), null,
+                new AdmissionFilter(4, 1, 0, 0));
+        server.start();
+
+        CompletableFuture<HttpResponse<String>> slow =
+                client.sendAsync(post("{\"title\":\"A\"}"), HttpResponse.BodyHandlers.ofString());
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        HttpResponse<String> refused = client.send(post("{\"title\":\"B\"}"), HttpResponse.BodyHandlers.ofString());
+        assertEquals(503, refused.statusCode(), "Второй запрос на запись должен получить отказ");
+        assertTrue(refused.headers().firstValue("Retry-After").isPresent());
+        assertEquals(200, get("/tasks").statusCode(), "Чтения ограничиваются отдельно");
+
+        release.countDown();
+        assertEquals(201, slow.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(1, manager.getAllTasks().size());
+    }
+
+    private InMemoryTaskManager blockingCreates(CountDownLatch entered, CountDownLatch release) {
+        return new InMemoryTaskManager() {
+            @Override
+            public int createTask(Task task) {
+                entered.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.createTask(task);
+            }
+        };
+    }
+
+    @Test
+    public void poolWorkers_doNotWaitForASlot() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryTaskManager manager = blockingCreates(entered, release);
+        server = new HttpTaskServer(manager, 8080, 64, ExecutionMode.POOL, 2, null, null,
+                new AdmissionFilter(4, 1, 16, 10_000));
+        server.start();
+
+        CompletableFuture<HttpResponse<String>> slow =
+                client.sendAsync(post("{\"title\":\"A\"}"), HttpResponse.BodyHandlers.ofString());
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        HttpResponse<String> refused = client.send(post("{\"title\":\"B\"}"), HttpResponse.BodyHandlers.ofString());
+        assertEquals(503, refused.statusCode());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5),
+                "Поток пула не должен ждать свободного слота");
+
+        release.countDown();
+        assertEquals(201, slow.get(5, TimeUnit.SECONDS).statusCode());
+    }
+
+    @Test
+    public void virtualThreads_waitForASlot() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryTaskManager manager = blockingCreates(entered, release);
+        server = new HttpTaskServer(manager, 8080, 64, ExecutionMode.VIRTUAL, 2, null, null,
+                new AdmissionFilter(4, 1, 16, 10_000));
+        server.start();
+        try {
+            Thread.class.getMethod("isVirtual");
+        } catch (NoSuchMethodException preJdk21) {
+            // VIRTUAL falls back to the pool, covered above.
+            return;
+        }
+
+        CompletableFuture<HttpResponse<String>> slow =
+                client.sendAsync(post("{\"title\":\"A\"}"), HttpResponse.BodyHandlers.ofString());
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<HttpResponse<String>> waiting =
+                client.sendAsync(post("{\"title\":\"B\"}"), HttpResponse.BodyHandlers.ofString());
+        Thread.sleep(200);
+        release.countDown();
+
+        assertEquals(201, slow.get(5, TimeUnit.SECONDS).statusCode());
+        assertEquals(201, waiting.get(5, TimeUnit.SECONDS).statusCode(), "Виртуальный поток дожидается слота");
+    }
+
+    @Test
+    public void clientOverItsRate_gets429() throws Exception {
+        server = new HttpTaskServer(new InMemoryTaskManager(), 8080, 64, ExecutionMode.POOL, 4,
+                null, null, new AdmissionFilter().perClient(0.01, 2));
+        server.start();
+
+        assertEquals(200, get("/tasks").statusCode());
+        assertEquals(200, get("/tasks").statusCode());
+        HttpResponse<String> throttled = get("/tasks");
+        assertEquals(429, throttled.statusCode());
+        assertTrue(Long.parseLong(throttled.headers().firstValue("Retry-After").orElse("0")) > 1);
+    }
+}
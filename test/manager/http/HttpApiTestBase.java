@@ -19,9 +19,13 @@ public abstract class HttpApiTestBase {
 
     protected static final String BASE = "http://localhost:8080";
 
+    protected TaskManager createManager() {
+        return new InMemoryTaskManager();
+    }
+
     @BeforeEach
     void setUp() throws Exception {
-        manager = new InMemoryTaskManager();
+        manager = createManager();
         server = new HttpTaskServer(manager);
         client = HttpClient.newHttpClient();
         server.start();
@@ -37,6 +41,11 @@ public abstract class HttpApiTestBase {
         return client.send(req, HttpResponse.BodyHandlers.ofString());
     }
 
+    protected HttpResponse<String> GET(String path, String... headers) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(BASE + path)).headers(headers).GET().build();
+        return client.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
     protected HttpResponse<String> DELETE(String path) throws Exception {
         HttpRequest req = HttpRequest.newBuilder(URI.create(BASE + path)).DELETE().build();
         return client.send(req, HttpResponse.BodyHandlers.ofString());
@@ -1,12 +1,14 @@
 package manager.http;
 
 import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.model.Epic;
 import ru.practicum.yandex.tracker.model.Task;
 
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpCommonApiTest extends HttpApiTestBase {
 
@@ -33,4 +35,33 @@ public class HttpCommonApiTest extends HttpApiTestBase {
         assertEquals(1, pr.size(), "В приоритете должны быть только задачи с временем");
         assertEquals("Timed", pr.get(0).getTitle());
     }
+
+    @Test
+    public void routes_matchTemplates_andRejectOthers() throws Exception {
+        int epicId = manager.createEpic(new Epic(0, "E", ""));
+
+        assertEquals(200, GET("/epics/" + epicId + "/subtasks/").statusCode());
+        assertEquals(404, GET("/epics/abc").statusCode(), "Нечисловой id не совпадает с шаблоном");
+        assertEquals(404, GET("/epics/99999999999").statusCode(), "id вне диапазона int");
+        assertEquals(404, GET("/unknown").statusCode());
+        assertEquals(405, DELETE("/history").statusCode());
+        assertEquals(400, DELETE("/epics").statusCode());
+    }
+
+    @Test
+    public void metrics_reportRequestsPerRouteTemplate() throws Exception {
+        int id = manager.createTask(new Task(0, "T", ""));
+        GET("/tasks/" + id);
+        GET("/tasks/" + id);
+        GET("/tasks/999");
+
+        var r = GET("/metrics");
+        assertEquals(200, r.statusCode());
+        String body = r.body();
+        assertTrue(body.contains("tracker_http_requests_total{route=\"/tasks/{id}\",method=\"GET\",status=\"2xx\"} 2"),
+                "Счётчик должен идти по шаблону маршрута, а не по пути");
+        assertTrue(body.contains("tracker_http_requests_total{route=\"/tasks/{id}\",method=\"GET\",status=\"4xx\"} 1"));
+        assertTrue(body.contains("tracker_http_request_duration_seconds{route=\"/tasks/{id}\",method=\"GET\",quantile=\"0.99\"}"));
+        assertTrue(body.contains("tracker_http_response_size_bytes_count{route=\"/tasks/{id}\",method=\"GET\"} 3"));
+    }
 }
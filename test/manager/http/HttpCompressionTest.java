@@ -0,0 +1,108 @@
+package manager.http;
+
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.http.CompressionFilter;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpCompressionTest extends HttpApiTestBase {
+
+    private HttpResponse<byte[]> getBytes(String path, String acceptEncoding) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create(BASE + path))
+                .header("Accept-Encoding", acceptEncoding).GET().build();
+        return client.send(req, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static String inflate(InputStream in) throws Exception {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void largeList_isGzipped_whenAccepted() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            manager.createTask(new Task(0, "T" + i, "Повторяющееся описание задачи"));
+        }
+
+        var r = getBytes("/tasks", "deflate;q=0.5, gzip");
+        assertEquals(200, r.statusCode());
+        assertEquals("gzip", r.headers().firstValue("Content-Encoding").orElse(""));
+        String json = inflate(new GZIPInputStream(new ByteArrayInputStream(r.body())));
+        assertEquals(500, JsonParser.parseString(json).getAsJsonArray().size());
+        assertTrue(r.body().length * 5 < json.length(), "Повторяющийся JSON должен хорошо сжиматься");
+
+        var deflated = getBytes("/tasks", "gzip;q=0, deflate");
+        assertEquals("deflate", deflated.headers().firstValue("Content-Encoding").orElse(""));
+        String again = inflate(new InflaterInputStream(new ByteArrayInputStream(deflated.body())));
+        assertEquals(json, again);
+    }
+
+    @Test
+    public void smallResponse_isSentPlain() throws Exception {
+        int id = manager.createTask(new Task(0, "T", "D"));
+
+        var one = getBytes("/tasks/" + id, "gzip");
+        assertFalse(one.headers().firstValue("Content-Encoding").isPresent());
+        var list = getBytes("/tasks", "gzip");
+        assertFalse(list.headers().firstValue("Content-Encoding").isPresent());
+        assertEquals(1, JsonParser.parseString(new String(list.body(), StandardCharsets.UTF_8))
+                .getAsJsonArray().size());
+    }
+
+    @Test
+    public void gzipBomb_isRejectedWith413() throws Exception {
+        String padding = "a".repeat((int) CompressionFilter.DEFAULT_MAX_DECODED_BYTES);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(buf)) {
+            gz.write(jsonTask("Бомба", padding, null, 15, null).getBytes(StandardCharsets.UTF_8));
+        }
+        assertTrue(buf.size() < 64 * 1024, "Сжатое тело должно быть маленьким");
+
+        for (String path : new String[]{"/tasks", "/epics"}) {
+            HttpRequest req = HttpRequest.newBuilder(URI.create(BASE + path))
+                    .header("Content-Encoding", "gzip")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(buf.toByteArray()))
+                    .build();
+            assertEquals(413, client.send(req, HttpResponse.BodyHandlers.ofString()).statusCode(), path);
+        }
+        assertTrue(manager.getAllTasks().isEmpty());
+        assertTrue(manager.getAllEpics().isEmpty());
+    }
+
+    @Test
+    public void gzipRequestBody_isDecoded() throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try (GZIPOutputStream gz = new GZIPOutputStream(buf)) {
+            gz.write(jsonTask("Сжатая", "D", null, 15, null).getBytes(StandardCharsets.UTF_8));
+        }
+        HttpRequest req = HttpRequest.newBuilder(URI.create(BASE + "/tasks"))
+                .header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(buf.toByteArray()))
+                .build();
+
+        assertEquals(201, client.send(req, HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals("Сжатая", manager.getAllTasks().get(0).getTitle());
+
+        HttpRequest bad = HttpRequest.newBuilder(URI.create(BASE + "/tasks"))
+                .header("Content-Encoding", "br")
+                .POST(HttpRequest.BodyPublishers.ofString("{}"))
+                .build();
+        assertEquals(415, client.send(bad, HttpResponse.BodyHandlers.ofString()).statusCode());
+    }
+}
@@ -0,0 +1,172 @@
+package manager.http;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.http.EventStream;
+import ru.practicum.yandex.tracker.model.Epic;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpEventsApiTest extends HttpApiTestBase {
+
+    private HttpResponse<Stream<String>> subscribe(String... headers) throws Exception {
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create(BASE + "/events")).GET();
+        if (headers.length > 0) {
+            req.headers(headers);
+        }
+        return client.send(req.build(), HttpResponse.BodyHandlers.ofLines());
+    }
+
+    // Reads the next `count` events as "event|id|data" strings, skipping heartbeats.
+    private static List<String[]> next(Iterator<String> lines, int count) {
+        List<String[]> out = new ArrayList<>();
+        String id = null;
+        String event = null;
+        while (out.size() < count && lines.hasNext()) {
+            String line = lines.next();
+            if (line.startsWith("id: ")) {
+                id = line.substring(4);
+            } else if (line.startsWith("event: ")) {
+                event = line.substring(7);
+            } else if (line.startsWith("data: ")) {
+                out.add(new String[]{event, id, line.substring(6)});
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void events_streamLiveChanges() throws Exception {
+        var r = subscribe();
+        assertEquals(200, r.statusCode());
+        assertTrue(r.headers().firstValue("Content-Type").orElse("").startsWith("text/event-stream"));
+
+        int epicId = manager.createEpic(new Epic(0, "E", ""));
+        manager.createSubtask(new Subtask(0, "S", "", epicId));
+
+        Iterator<String> lines = r.body().iterator();
+        List<String[]> events = next(lines, 3);
+        assertEquals("created", events.get(0)[0]);
+        assertEquals("created", events.get(1)[0]);
+        JsonObject sub = JsonParser.parseString(events.get(1)[2]).getAsJsonObject();
+        assertEquals(epicId, sub.getAsJsonObject("payload").get("epicId").getAsInt(), "Полезная нагрузка типизирована");
+        assertEquals("epic_recalculated", events.get(2)[0]);
+        r.body().close();
+    }
+
+    @Test
+    public void events_resumeAfterLastEventId() throws Exception {
+        int first = manager.createTask(new Task(0, "T1", ""));
+        manager.createTask(new Task(0, "T2", ""));
+        manager.deleteTaskById(first);
+        long afterFirst = manager.getEventsSince(0, 1).get(0).getSequence();
+
+        var r = subscribe("Last-Event-ID", String.valueOf(afterFirst));
+        Iterator<String> lines = r.body().iterator();
+        manager.createTask(new Task(0, "T3", ""));
+
+        List<String[]> events = next(lines, 3);
+        assertEquals("created", events.get(0)[0]);
+        assertEquals(String.valueOf(afterFirst + 1), events.get(0)[1]);
+        assertEquals("deleted", events.get(1)[0]);
+        assertEquals("created", events.get(2)[0]);
+        assertTrue(events.get(2)[2].contains("T3"), "После повтора идут живые события");
+        r.body().close();
+    }
+
+    @Test
+    public void events_resetWhenLastEventIdIsAhead() throws Exception {
+        manager.createTask(new Task(0, "T1", ""));
+        long last = manager.getLastSequence();
+
+        var r = subscribe("Last-Event-ID", String.valueOf(last + 100));
+        Iterator<String> lines = r.body().iterator();
+        manager.createTask(new Task(0, "T2", ""));
+
+        List<String[]> events = next(lines, 2);
+        assertEquals("reset", events.get(0)[0]);
+        assertEquals(String.valueOf(last), events.get(0)[1], "Сброс указывает на текущую последовательность");
+        assertEquals("created", events.get(1)[0]);
+        assertEquals(String.valueOf(last + 1), events.get(1)[1]);
+        assertTrue(events.get(1)[2].contains("T2"), "Новые события не теряются после сброса");
+        r.body().close();
+    }
+
+    @Test
+    public void stalledSubscriber_doesNotBlockOthers_andIsDropped() throws Exception {
+        try (Socket stalled = new Socket("localhost", 8080)) {
+            stalled.setReceiveBufferSize(4096);
+            stalled.getOutputStream().write("GET /events HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            stalled.getOutputStream().flush();
+            var r = subscribe();
+            Iterator<String> lines = r.body().iterator();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (subscriberCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(2, subscriberCount());
+
+            String padding = "x".repeat(64 * 1024);
+            int last = 0;
+            for (int i = 0; i < 300; i++) {
+                last = manager.createTask(new Task(0, "T" + i, padding));
+            }
+
+            // A reader that falls behind the burst may get a reset; either way it catches up.
+            String lastId = "id: " + manager.getLastSequence();
+            boolean seen = false;
+            while (!seen && lines.hasNext()) {
+                seen = lastId.equals(lines.next());
+            }
+            assertTrue(seen, "Живой подписчик получает события, пока другой не читает");
+            assertTrue(manager.containsTask(last));
+
+            deadline = System.currentTimeMillis() + EventStream.WRITE_TIMEOUT_MS + 5_000;
+            while (subscriberCount() > 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(1, subscriberCount(), "Нечитающий подписчик отключается при переполнении очереди");
+            r.body().close();
+        }
+    }
+
+    private int subscriberCount() throws Exception {
+        for (String line : GET("/metrics").body().split("\n")) {
+            if (line.startsWith("tracker_events_subscribers ")) {
+                return (int) Double.parseDouble(line.substring(line.indexOf(' ') + 1).trim());
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void changes_returnDeltaAndHighWaterMark() throws Exception {
+        int id = manager.createTask(new Task(0, "T1", ""));
+        long since = manager.getLastSequence();
+        manager.deleteTaskById(id);
+        manager.createTask(new Task(0, "T2", ""));
+
+        var r = GET("/changes?since=" + since);
+        assertEquals(200, r.statusCode());
+        JsonObject body = JsonParser.parseString(r.body()).getAsJsonObject();
+        assertEquals(manager.getLastSequence(), body.get("highWaterMark").getAsLong());
+        assertEquals(2, body.getAsJsonArray("changes").size());
+        assertEquals("DELETED", body.getAsJsonArray("changes").get(0).getAsJsonObject().get("change").getAsString());
+        assertEquals(400, GET("/changes?since=x").statusCode());
+    }
+}
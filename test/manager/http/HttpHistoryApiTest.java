@@ -0,0 +1,74 @@
+package manager.http;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.manager.Managers;
+import ru.practicum.yandex.tracker.manager.TaskManager;
+import ru.practicum.yandex.tracker.model.Task;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpHistoryApiTest extends HttpApiTestBase {
+
+    @Override
+    protected TaskManager createManager() {
+        return Managers.getDefault();
+    }
+
+    @Test
+    public void history_isKeptPerSession() throws Exception {
+        int a = manager.createTask(new Task(0, "A", ""));
+        int b = manager.createTask(new Task(0, "B", ""));
+
+        GET("/tasks/" + a, "X-Session-Id", "alice");
+        GET("/tasks/" + b, "X-Session-Id", "bob");
+
+        assertEquals(1, manager.getHistory("alice").size());
+        assertEquals(a, manager.getHistory("alice").get(0).getId());
+        assertEquals(b, manager.getHistory("bob").get(0).getId());
+
+        var r = GET("/history", "X-Session-Id", "alice");
+        assertEquals(200, r.statusCode());
+        assertTrue(r.body().contains("\"A\""));
+        assertFalse(r.body().contains("\"B\""));
+    }
+
+    @Test
+    public void history_supportsPaging() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            manager.getTaskById(manager.createTask(new Task(0, "T" + i, "")));
+        }
+
+        var r = GET("/history?limit=2");
+        assertEquals(200, r.statusCode());
+        JsonObject page = JsonParser.parseString(r.body()).getAsJsonObject();
+        assertEquals(2, page.getAsJsonArray("items").size());
+        assertEquals("T3", page.getAsJsonArray("items").get(0).getAsJsonObject().get("title").getAsString());
+
+        var rest = GET("/history?limit=2&cursor=" + page.get("nextCursor").getAsString());
+        JsonObject tail = JsonParser.parseString(rest.body()).getAsJsonObject();
+        assertEquals(1, tail.getAsJsonArray("items").size());
+        assertTrue(tail.get("nextCursor").isJsonNull());
+
+        assertEquals(400, GET("/history?limit=0").statusCode());
+        assertEquals(400, GET("/history?cursor=bogus").statusCode());
+    }
+
+    @Test
+    public void topViewed_ranksByViews() throws Exception {
+        int a = manager.createTask(new Task(0, "A", ""));
+        int b = manager.createTask(new Task(0, "B", ""));
+        for (int i = 0; i < 3; i++) {
+            GET("/tasks/" + b, "X-Session-Id", "u" + i);
+        }
+        GET("/tasks/" + a);
+
+        var r = GET("/history/top?limit=1");
+        assertEquals(200, r.statusCode());
+        JsonObject first = JsonParser.parseString(r.body()).getAsJsonArray().get(0).getAsJsonObject();
+        assertEquals(b, first.get("id").getAsInt());
+        assertEquals(3, first.get("views").getAsLong());
+        assertEquals(400, GET("/history/top?type=unknown").statusCode());
+    }
+}
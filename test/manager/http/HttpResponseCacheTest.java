@@ -0,0 +1,104 @@
+package manager.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.http.CompressionFilter;
+import ru.practicum.yandex.tracker.http.ExecutionMode;
+import ru.practicum.yandex.tracker.http.HttpTaskServer;
+import ru.practicum.yandex.tracker.http.ResponseCache;
+import ru.practicum.yandex.tracker.manager.InMemoryTaskManager;
+import ru.practicum.yandex.tracker.manager.TaskManager;
+import ru.practicum.yandex.tracker.model.Epic;
+import ru.practicum.yandex.tracker.model.Subtask;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HttpResponseCacheTest {
+    private TaskManager manager;
+    private ResponseCache cache;
+    private HttpTaskServer server;
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        manager = new InMemoryTaskManager();
+        cache = new ResponseCache(64 * 1024);
+        server = new HttpTaskServer(manager, 8080, 64, ExecutionMode.POOL, 2, new CompressionFilter(), cache);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create("http://localhost:8080" + path)).GET().build();
+        return client.send(req, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void repeatedList_isServedFromCache_untilItsTypeChanges() throws Exception {
+        manager.createTask(new Task(0, "T1", "D"));
+
+        String first = get("/tasks").body();
+        assertEquals(0, cache.getHits());
+        assertEquals(first, get("/tasks").body());
+        assertEquals(1, cache.getHits());
+
+        manager.createEpic(new Epic(0, "E", ""));
+        get("/tasks");
+        assertEquals(2, cache.getHits(), "Изменение эпиков не сбрасывает кэш задач");
+
+        manager.createTask(new Task(0, "T2", "D"));
+        var fresh = get("/tasks");
+        assertEquals(2, cache.getHits());
+        assertTrue(fresh.body().contains("T2"));
+    }
+
+    @Test
+    public void listingOverTwoTypes_isDroppedByEither_andBytesStayAccounted() throws Exception {
+        int epicId = manager.createEpic(new Epic(0, "E", ""));
+        manager.createTask(new Task(0, "T1", "D"));
+        get("/prioritized");
+        get("/epics");
+        long epicsOnly = cache.getSizeBytes();
+        get("/tasks");
+        assertTrue(cache.getSizeBytes() > epicsOnly);
+
+        manager.createTask(new Task(0, "T2", "D"));
+        get("/epics");
+        assertEquals(1, cache.getHits(), "Список эпиков остаётся в кэше");
+
+        get("/prioritized");
+        manager.createSubtask(new Subtask(0, "S", "", epicId));
+        assertEquals(0, cache.getSizeBytes(), "Подзадача сбрасывает и приоритеты, и эпики");
+        get("/prioritized");
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void queries_areCachedSeparately_withinBudget() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            manager.createTask(new Task(0, "Задача " + i, "Описание"));
+        }
+        get("/tasks?limit=5");
+        get("/tasks?limit=10");
+        assertEquals(0, cache.getHits(), "Разные запросы не делят запись");
+        get("/tasks?limit=5");
+        assertEquals(1, cache.getHits());
+
+        for (int i = 0; i < 50; i++) {
+            get("/tasks?limit=" + (i + 20));
+        }
+        assertTrue(cache.getSizeBytes() <= 64 * 1024, "Кэш не должен превышать бюджет");
+    }
+}
@@ -0,0 +1,53 @@
+package manager.http;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.http.ExecutionMode;
+import ru.practicum.yandex.tracker.http.HttpTaskServer;
+import ru.practicum.yandex.tracker.manager.InMemoryTaskManager;
+import ru.practicum.yandex.tracker.manager.TaskManager;
+import ru.practicum.yandex.tracker.model.Task;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpServerExecutionTest {
+
+    @Test
+    public void concurrentCreates_getUniqueIds_inEveryMode() throws Exception {
+        for (ExecutionMode mode : ExecutionMode.values()) {
+            TaskManager manager = new InMemoryTaskManager();
+            HttpTaskServer server = new HttpTaskServer(manager, 8080, 64, mode, 4);
+            server.start();
+            try {
+                HttpClient client = HttpClient.newHttpClient();
+                List<CompletableFuture<HttpResponse<String>>> calls = new ArrayList<>();
+                for (int i = 0; i < 40; i++) {
+                    HttpRequest req = HttpRequest.newBuilder(URI.create("http://localhost:8080/tasks"))
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"title\":\"T" + i + "\"}"))
+                            .build();
+                    calls.add(client.sendAsync(req, HttpResponse.BodyHandlers.ofString()));
+                }
+                for (CompletableFuture<HttpResponse<String>> call : calls) {
+                    assertEquals(201, call.get().statusCode(), "Режим " + mode);
+                }
+
+                Set<Integer> ids = new HashSet<>();
+                for (Task t : manager.getAllTasks()) {
+                    ids.add(t.getId());
+                }
+                assertEquals(40, ids.size());
+            } finally {
+                server.stop();
+            }
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package manager.http;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class HttpSubtasksApiTest extends HttpApiTestBase {
 
@@ -57,4 +60,30 @@ public class HttpSubtasksApiTest extends HttpApiTestBase {
         assertEquals(LocalDateTime.of(2025,1,1,11,0), after.getStartTime());
         assertEquals(Duration.ofMinutes(20), after.getDuration());
     }
+
+    @Test
+    public void listSubtasks_byEpic_isPaged() throws Exception {
+        POST("/epics", jsonEpic("E1", "", null));
+        POST("/epics", jsonEpic("E2", "", null));
+        int e1 = manager.getAllEpics().get(0).getId();
+        int e2 = manager.getAllEpics().get(1).getId();
+        for (int i = 0; i < 3; i++) {
+            POST("/subtasks", jsonSubtask("S" + i, "", e1, null, null, null));
+        }
+        POST("/subtasks", jsonSubtask("Other", "", e2, null, null, null));
+
+        var r = GET("/subtasks?epicId=" + e1 + "&limit=2&sort=id&order=desc");
+        assertEquals(200, r.statusCode());
+        JsonObject page = JsonParser.parseString(r.body()).getAsJsonObject();
+        assertEquals(2, page.getAsJsonArray("items").size());
+        assertEquals("S2", page.getAsJsonArray("items").get(0).getAsJsonObject().get("title").getAsString());
+
+        var next = GET("/subtasks?epicId=" + e1 + "&limit=2&sort=id&order=desc&cursor="
+                + page.get("nextCursor").getAsString());
+        JsonObject last = JsonParser.parseString(next.body()).getAsJsonObject();
+        assertEquals(1, last.getAsJsonArray("items").size());
+        assertTrue(last.get("nextCursor").isJsonNull());
+
+        assertEquals(400, GET("/subtasks?status=LATE").statusCode());
+    }
 }
@@ -1,6 +1,8 @@
 package manager.http;
 
+import com.google.gson.JsonParser;
 import org.junit.jupiter.api.Test;
+import ru.practicum.yandex.tracker.model.Epic;
 import ru.practicum.yandex.tracker.model.Task;
 
 import java.time.Duration;
@@ -24,6 +26,31 @@ public class HttpTasksApiTest extends HttpApiTestBase {
         assertEquals(LocalDateTime.of(2025,1,1,9,0), all.get(0).getStartTime());
     }
 
+    @Test
+    public void createTask_acceptsAliases_inAnyOrder() throws Exception {
+        var r = POST("/tasks", "{\"dur\":10,\"desc\":\"short\",\"title\":\"T\",\"extra\":{\"a\":[1,2]},"
+                + "\"startTime\":\"2025-01-01T07:00\",\"duration\":\"PT20M\",\"description\":\"long\","
+                + "\"start\":\"2025-01-01T09:00\",\"durationMinutes\":\"bad\"}");
+        assertEquals(201, r.statusCode());
+
+        Task t = manager.getAllTasks().get(0);
+        assertEquals("long", t.getDescription());
+        assertEquals(Duration.ofMinutes(20), t.getDuration(), "Нечитаемый durationMinutes не должен перекрывать duration");
+        assertEquals(LocalDateTime.of(2025,1,1,9,0), t.getStartTime());
+    }
+
+    @Test
+    public void createTask_malformedDuration_fallsBackToNextAlias() throws Exception {
+        for (String bad : new String[]{"1+2", "1e", "1.2.3", "--", "9e99999"}) {
+            var r = POST("/tasks", "{\"title\":\"T\",\"description\":\"\",\"duration\":\"" + bad + "\",\"dur\":15}");
+            assertEquals(201, r.statusCode(), "Нечитаемая длительность " + bad);
+        }
+        for (Task t : manager.getAllTasks()) {
+            assertEquals(Duration.ofMinutes(15), t.getDuration());
+        }
+        assertEquals(5, manager.getAllTasks().size());
+    }
+
     @Test
     public void getTaskById_returns200_or404() throws Exception {
         POST("/tasks", jsonTask("T1", "D", null, null, null));
@@ -58,6 +85,74 @@ public class HttpTasksApiTest extends HttpApiTestBase {
         assertEquals(404, DELETE("/tasks/" + id).statusCode());
     }
 
+    @Test
+    public void writes_doNotRecordHistory() throws Exception {
+        POST("/tasks", jsonTask("Old", "D", null, null, null));
+        int id = manager.getAllTasks().get(0).getId();
+
+        POST("/tasks", jsonTask("New", "D", null, null, id));
+        assertTrue(manager.getHistory().isEmpty(), "Обновление не должно попадать в историю");
+
+        GET("/tasks/" + id);
+        assertEquals(1, manager.getHistory().size());
+        DELETE("/tasks/" + id);
+        assertTrue(manager.getHistory().isEmpty());
+    }
+
+    @Test
+    public void listTasks_isStreamedChunked() throws Exception {
+        for (int i = 0; i < 2000; i++) {
+            manager.createTask(new Task(0, "T" + i, "D"));
+        }
+
+        var r = GET("/tasks");
+        assertEquals(200, r.statusCode());
+        assertEquals("chunked", r.headers().firstValue("Transfer-Encoding").orElse(""));
+        assertEquals(2000, JsonParser.parseString(r.body()).getAsJsonArray().size());
+    }
+
+    @Test
+    public void conditionalGet_returns304_untilChanged() throws Exception {
+        int id = manager.createTask(new Task(0, "T", "D"));
+
+        var list = GET("/tasks");
+        String tag = list.headers().firstValue("ETag").orElseThrow();
+        assertEquals(304, GET("/tasks", "If-None-Match", tag).statusCode());
+        var one = GET("/tasks/" + id);
+        String entityTag = one.headers().firstValue("ETag").orElseThrow();
+        assertEquals(304, GET("/tasks/" + id, "If-None-Match", entityTag).statusCode());
+        assertEquals(1, manager.getHistory().size(), "Повторная проверка не считается просмотром");
+
+        manager.createEpic(new Epic(0, "E", ""));
+        assertEquals(304, GET("/tasks", "If-None-Match", tag).statusCode(), "Эпики не меняют список задач");
+
+        POST("/tasks", jsonTask("T2", "D", null, null, id));
+        var changed = GET("/tasks", "If-None-Match", tag);
+        assertEquals(200, changed.statusCode());
+        assertTrue(changed.body().contains("T2"));
+        assertEquals(200, GET("/tasks/" + id, "If-None-Match", entityTag).statusCode());
+    }
+
+    @Test
+    public void listTasks_rejectsOversizedLimit() throws Exception {
+        manager.createTask(new Task(0, "T", "D"));
+
+        assertEquals(200, GET("/tasks?limit=1000").statusCode());
+        assertEquals(400, GET("/tasks?limit=1001").statusCode());
+        assertEquals(400, GET("/tasks?limit=2147483647").statusCode(), "Огромный лимит не должен приводить к 500");
+    }
+
+    @Test
+    public void updateTask_withStaleVersion_returns409() throws Exception {
+        POST("/tasks", jsonTask("Old", "D", null, null, null));
+        int id = manager.getAllTasks().get(0).getId();
+
+        String v1 = "{\"id\":" + id + ",\"title\":\"A\",\"description\":\"\",\"version\":1}";
+        assertEquals(200, POST("/tasks", v1).statusCode());
+        assertEquals(409, POST("/tasks", v1).statusCode(), "Повторное обновление по старой версии");
+        assertEquals(2, manager.getTaskById(id).getVersion());
+    }
+
     @Test
     public void createTask_overlap_returns406() throws Exception {
         POST("/tasks", jsonTask("A", "D","2025-01-01T10:00", 60, null));